@@ -14,6 +14,7 @@ import java.util.List;
 import eu.h2020.helios_social.core.context.Context;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * MessageContext instrumented test, which will execute on an Android device.
@@ -62,6 +63,12 @@ public class MessageContextInstrumentedTest {
             Log.i("Context", "Context id:" + mc.getContextID());
             assertEquals(contextID, mc.getContextID());
         }
+        // deleted before the insert is written
+        repository.delete(messageContext5);
+        assertTrue(repository.flush()); // write the queued inserts before querying the database
+        // the database ids are published when the inserts have been written
+        assertTrue(messageContext.id > 0);
+        assertEquals(4, repository.getMessagesByContextFrom(contextID, from).size());
         history = repository.getMessagesByContextFrom(contextID, from);
         for (MessageContext mc : history) {
             Log.i("Context", "Context id:" + mc.getContextID() + "," + mc.getFrom());
@@ -0,0 +1,131 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * AsyncContextListener delivers the context changes to a ContextListener on an executor, so that a slow
+ * listener does not block the thread, which changed the context (e.g. a sensor thread).<br/>
+ *
+ * The listener receives the changes in order, and it is never called concurrently, even if the executor
+ * has several threads. The pending changes are kept either in a bounded queue, which drops the oldest
+ * change when it is full, or coalesced to the latest active value, so that the listener is called only
+ * if the latest value differs from the last value it received.
+ * <pre>
+ *     context.registerContextListener(new AsyncContextListener(listener, executor, 16));
+ * </pre>
+ */
+public class AsyncContextListener implements ContextListener {
+
+    private final ContextListener listener;
+    private final Executor executor;
+    private final int capacity;     // 0 if the changes are coalesced
+    private final ArrayDeque<Boolean> queue;
+    private boolean latest;
+    private boolean hasLatest;
+    private int lastDelivered = -1; // the last value delivered in coalescing mode, -1 if none
+    private boolean scheduled;
+    private long droppedCount;
+
+    /**
+     * Creates an AsyncContextListener, which coalesces the pending changes to the latest active value
+     * @param listener the listener
+     * @param executor the executor, which calls the listener
+     */
+    public AsyncContextListener(@NonNull ContextListener listener, @NonNull Executor executor) {
+        this(listener, executor, 0);
+    }
+
+    /**
+     * Creates an AsyncContextListener, which keeps the pending changes in a bounded queue
+     * @param listener the listener
+     * @param executor the executor, which calls the listener
+     * @param capacity the maximum number of pending changes, or 0 to coalesce the changes
+     */
+    public AsyncContextListener(@NonNull ContextListener listener, @NonNull Executor executor, int capacity) {
+        this.listener = listener;
+        this.executor = executor;
+        this.capacity = Math.max(capacity, 0);
+        this.queue = new ArrayDeque<>(Math.max(this.capacity, 1));
+    }
+
+    /**
+     * Returns the listener, which receives the changes
+     * @return the listener
+     */
+    public ContextListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Returns the number of changes dropped from the full queue
+     * @return the number of dropped changes
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    @Override
+    public void contextChanged(boolean active) {
+        synchronized (this) {
+            if (capacity == 0) {
+                latest = active;
+                hasLatest = true;
+            } else {
+                if (queue.size() == capacity) {
+                    queue.poll();
+                    droppedCount++;
+                }
+                queue.add(active);
+            }
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                scheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    // Delivers the pending changes in order. At most one delivery runs at a time.
+    private void deliver() {
+        while (true) {
+            boolean value;
+            synchronized (this) {
+                if (capacity == 0) {
+                    if (hasLatest && (latest ? 1 : 0) == lastDelivered) {
+                        hasLatest = false;
+                    }
+                    if (!hasLatest) {
+                        scheduled = false;
+                        return;
+                    }
+                    value = latest;
+                    hasLatest = false;
+                    lastDelivered = value ? 1 : 0;
+                } else {
+                    Boolean next = queue.poll();
+                    if (next == null) {
+                        scheduled = false;
+                        return;
+                    }
+                    value = next;
+                }
+            }
+            try {
+                listener.contextChanged(value);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
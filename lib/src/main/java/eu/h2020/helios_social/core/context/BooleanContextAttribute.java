@@ -0,0 +1,48 @@
+package eu.h2020.helios_social.core.context;
+
+/**
+ * BooleanContextAttribute is a context attribute with a boolean value. The value is read and written
+ * without boxing, and the listeners are notified only when the value changes.
+ */
+public class BooleanContextAttribute extends ContextAttribute {
+
+    private volatile boolean value;
+
+    /**
+     * Creates a BooleanContextAttribute
+     * @param attributeName the name of this context attribute
+     * @param value the initial value
+     */
+    public BooleanContextAttribute(String attributeName, boolean value) {
+        super(attributeName);
+        this.value = value;
+    }
+
+    /**
+     * Gets the value of this attribute
+     * @return the value
+     */
+    public boolean getBoolean() {
+        return value;
+    }
+
+    /**
+     * Sets the value of this attribute. The version is incremented and the listeners are notified,
+     * if the value changed.
+     * @param value the value
+     */
+    public void setBoolean(boolean value) {
+        synchronized (this) {
+            if (this.value == value) {
+                return;
+            }
+            this.value = value;
+        }
+        valueChanged();
+    }
+
+    @Override
+    public Object getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,189 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConflatingPublisher is a reactive streams Publisher of a state, which conflates the state changes:
+ * a subscriber receives the latest state when it has requested more values, and the states it had
+ * no demand for are dropped. So, a slow subscriber never makes the publisher buffer values, and
+ * the thread, which changed the state, is never blocked waiting for demand.<br/>
+ *
+ * A subscriber receives the current state first, and then the changed states. A state equal to the
+ * last state received by the subscriber is not sent. The values are delivered in the thread, which
+ * changed the state or requested more values, or on an executor, if one is given. The delivery to
+ * a subscriber is serialized.<br/>
+ *
+ * The subclasses return the current state with the getState method, and call the publish method
+ * when the state has changed.
+ * @param <T> the state type
+ */
+public abstract class ConflatingPublisher<T> implements Publisher<T> {
+
+    private final Executor executor;
+    private final CopyOnWriteArrayList<StateSubscription> subscriptions;
+
+    /**
+     * Creates a ConflatingPublisher, which delivers the values in the calling thread
+     */
+    protected ConflatingPublisher() {
+        this(null);
+    }
+
+    /**
+     * Creates a ConflatingPublisher
+     * @param executor the executor, which delivers the values, or null to deliver in the calling thread
+     */
+    protected ConflatingPublisher(Executor executor) {
+        this.executor = executor;
+        this.subscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber is null");
+        }
+        StateSubscription subscription = new StateSubscription(subscriber);
+        synchronized (subscriptions) {
+            subscriptions.add(subscription);
+            if (subscriptions.size() == 1) {
+                onFirstSubscription();
+            }
+        }
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Returns the number of the active subscriptions
+     * @return the number of subscriptions
+     */
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Returns the current state
+     * @return the state
+     */
+    @NonNull
+    protected abstract T getState();
+
+    /**
+     * Informs the subscribers that the state has changed
+     */
+    protected void publish() {
+        for (StateSubscription subscription : subscriptions) {
+            subscription.changed = true;
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * Called when the first subscription is added, e.g. to start tracking the state
+     */
+    protected void onFirstSubscription() {
+    }
+
+    /**
+     * Called when the last subscription is cancelled, e.g. to stop tracking the state
+     */
+    protected void onLastSubscription() {
+    }
+
+    private void remove(StateSubscription subscription) {
+        synchronized (subscriptions) {
+            if (subscriptions.remove(subscription) && subscriptions.isEmpty()) {
+                onLastSubscription();
+            }
+        }
+    }
+
+    private class StateSubscription implements Subscription {
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean changed = true;    // the current state is sent first
+        private volatile boolean cancelled;
+        private volatile long invalidRequest;       // a non-positive request to be signalled as an error
+        private T last;                             // the last delivered state, accessed by the drain only
+
+        StateSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = n != 0 ? n : -1;
+            } else {
+                long current;
+                do {
+                    current = requested.get();
+                } while (!requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            remove(this);
+        }
+
+        void schedule() {
+            if (pendingDrains.getAndIncrement() != 0) {
+                return;
+            }
+            if (executor == null) {
+                drain();
+                return;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                pendingDrains.set(0);
+                e.printStackTrace();
+            }
+        }
+
+        // Delivers the latest state while there is demand. At most one drain runs at a time.
+        private void drain() {
+            int missed = 1;
+            do {
+                if (invalidRequest != 0 && !cancelled) {
+                    cancel();
+                    subscriber.onError(new IllegalArgumentException("Non-positive request: " + invalidRequest));
+                }
+                while (!cancelled && changed && requested.get() > 0) {
+                    changed = false;
+                    T state = getState();
+                    if (state.equals(last)) {
+                        continue;
+                    }
+                    last = state;
+                    if (requested.get() != Long.MAX_VALUE) {
+                        requested.decrementAndGet();
+                    }
+                    try {
+                        subscriber.onNext(state);
+                    } catch (RuntimeException e) {
+                        // a subscriber must not throw, so the subscription is cancelled
+                        e.printStackTrace();
+                        cancel();
+                    }
+                }
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -2,10 +2,15 @@ package eu.h2020.helios_social.core.context;
 
 import androidx.annotation.NonNull;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import eu.h2020.helios_social.core.sensor.Sensor;
 import eu.h2020.helios_social.core.sensor.SensorValueListener;
@@ -18,15 +23,42 @@ import eu.h2020.helios_social.core.sensor.SensorValueListener;
  * explicitly (e.g. a given static value) or implicitly (e.g. by an external context source, sensor value).
  * To listen the changes in the active value of a context, context listeners (see the {@link eu.h2020.helios_social.core.context.ContextListener} interface)
  * can be registered for the context.
- * New context types can be created by extending this class.
+ * New context types can be created by extending this class.<br/>
+ *
+ * Contexts are thread-safe. The active value changes with compare-and-set, so that each change
+ * is notified to the listeners exactly once, by the thread that made the change. The listeners are kept
+ * in a copy-on-write array, and they are notified without locking.<br/>
+ *
+ * A context is kept small, because an application may hold tens of thousands of them. The empty
+ * listener and sensor collections share one instance, a single sensor is kept without an array, and
+ * the attributes of the few contexts having them are kept in a side table. The given ids are interned.<br/>
+ *
+ * The epoch of a context is incremented when its active value or parameters change, so that a value
+ * derived from the context can be cached and validated by comparing the epoch.
+ *
+ * The changes are propagated to the listeners in a ContextTransaction, so that the composite contexts
+ * are evaluated in topological order and the other listeners are notified only of the net changes.
+ * @see eu.h2020.helios_social.core.context.ContextTransaction
  */
 public class Context {
 	private final String id;
 	private String name;
-	private boolean active;
-	private final List<ContextAttribute> attributes;
-	private final List<Sensor> sensors;
-	private final List<ContextListener> listeners;
+	private volatile int active;  // 1 if active, 0 if inactive
+	private volatile Object sensors;  // null, a Sensor, or a copy-on-write Sensor[] of two or more sensors
+	private volatile ContextListener[] listeners;
+	private volatile int rank;  // larger than the rank of the contexts this context listens to
+	private volatile long epoch;
+
+	private static final AtomicIntegerFieldUpdater<Context> ACTIVE =
+			AtomicIntegerFieldUpdater.newUpdater(Context.class, "active");
+	private static final AtomicLongFieldUpdater<Context> EPOCH =
+			AtomicLongFieldUpdater.newUpdater(Context.class, "epoch");
+	private static final ContextListener[] NO_LISTENERS = new ContextListener[0];
+	private static final Sensor[] NO_SENSORS = new Sensor[0];
+	// the copy-on-write attribute arrays of the contexts, which have attributes
+	private static final Map<Context, ContextAttribute[]> attributeTable = new WeakHashMap<>();
+	// the number of entries in attributeTable, so that the readers skip the lock when no context has attributes
+	private static volatile int attributeTableSize;
 
 	/**
 	 * Creates a context
@@ -36,12 +68,10 @@ public class Context {
 	 */
 	public Context(final String id, String name, boolean active) {
 		// if given id == null, generates a new id for the context
-		this.id = (id == null) ? UUID.randomUUID().toString() : id;
+		this.id = (id == null) ? UUID.randomUUID().toString() : id.intern();
 		this.name = name;
-		this.active = active;
-		attributes = new ArrayList<ContextAttribute>();
-		sensors = new ArrayList<Sensor>();
-		listeners = new ArrayList<ContextListener>();
+		this.active = active ? 1 : 0;
+		listeners = NO_LISTENERS;
 	}
 
 	/**
@@ -64,7 +94,7 @@ public class Context {
 	 * @return active the active value(boolean)
 	 */
 	public boolean isActive() {
-		return active;
+		return active != 0;
 	}
 
 	/**
@@ -79,18 +109,18 @@ public class Context {
 	 */
 	public void setName(String name) {
 		this.name = name;
+		parametersChanged();
 	}
 
 	/**
-	 * Sets context active value
+	 * Sets context active value. The listeners are notified when the current ContextTransaction
+	 * commits, or immediately if there is no transaction.
 	 * @param active the active value
 	 */
 	public void setActive(boolean active) {
-		if(active != this.active) {
-			this.active = active;
-			for (ContextListener listener : listeners) {
-				listener.contextChanged(active);
-			}
+		if(ACTIVE.compareAndSet(this, active ? 0 : 1, active ? 1 : 0)) {
+			EPOCH.incrementAndGet(this);
+			ContextTransaction.changed(this, active);
 		}
 	}
 
@@ -100,10 +130,23 @@ public class Context {
 	 */
 	public void addSensor(@NonNull Sensor sensor) {
 		if(this instanceof SensorValueListener) {
-			if(!sensors.contains(sensor)) {
-				sensor.registerValueListener((SensorValueListener) this);
-				sensors.add(sensor);
+			synchronized (this) {
+				Sensor[] current = getSensorArray();
+				for (Sensor s : current) {
+					if (s.equals(sensor)) {
+						return;
+					}
+				}
+				if (current.length == 0) {
+					sensors = sensor;
+				} else {
+					Sensor[] updated = Arrays.copyOf(current, current.length + 1);
+					updated[current.length] = sensor;
+					sensors = updated;
+				}
 			}
+			sensor.registerValueListener((SensorValueListener) this);
+			parametersChanged();
 		}
 	}
 
@@ -125,8 +168,28 @@ public class Context {
 	 */
 	public void removeSensor(@NonNull Sensor sensor) {
 		if(this instanceof SensorValueListener) {
+			synchronized (this) {
+				Sensor[] current = getSensorArray();
+				int i = current.length - 1;
+				while (i >= 0 && !current[i].equals(sensor)) {
+					i--;
+				}
+				if (i < 0) {
+					return;
+				}
+				if (current.length == 1) {
+					sensors = null;
+				} else if (current.length == 2) {
+					sensors = current[1 - i];
+				} else {
+					Sensor[] updated = new Sensor[current.length - 1];
+					System.arraycopy(current, 0, updated, 0, i);
+					System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+					sensors = updated;
+				}
+			}
 			sensor.unregisterValueListener((SensorValueListener) this);
-			sensors.remove(sensor);
+			parametersChanged();
 		}
 	}
 
@@ -135,34 +198,116 @@ public class Context {
 	 * @return the sensors
 	 */
 	public Iterator<Sensor> getSensors() {
-		return sensors.iterator();
+		return Arrays.asList(getSensorArray()).iterator();
+	}
+
+	// Returns the current sensors as an array, which must not be modified
+	private Sensor[] getSensorArray() {
+		Object current = sensors;
+		if (current == null) {
+			return NO_SENSORS;
+		}
+		return current instanceof Sensor ? new Sensor[] { (Sensor) current } : (Sensor[]) current;
 	}
 
 	/**
 	 * Adds attribute for the context
 	 * @param attr the attribute
 	 */
-	@Deprecated
 	public void addAttribute(ContextAttribute attr) {
-		attributes.add(attr);
+		synchronized (attributeTable) {
+			ContextAttribute[] current = attributeTable.get(this);
+			if (current == null) {
+				attributeTable.put(this, new ContextAttribute[] { attr });
+			} else {
+				ContextAttribute[] updated = Arrays.copyOf(current, current.length + 1);
+				updated[current.length] = attr;
+				attributeTable.put(this, updated);
+			}
+			attributeTableSize = attributeTable.size();
+		}
+		parametersChanged();
 	}
 
 	/**
 	 * Removes context attribute
 	 * @param attr the attribute
 	 */
-	@Deprecated
 	public void removeAttribute(ContextAttribute attr) {
-		attributes.remove(attr);
+		synchronized (attributeTable) {
+			ContextAttribute[] current = attributeTable.get(this);
+			if (current == null) {
+				return;
+			}
+			for (int i = 0; i < current.length; i++) {
+				if (current[i].equals(attr)) {
+					if (current.length == 1) {
+						attributeTable.remove(this);
+						attributeTableSize = attributeTable.size();
+					} else {
+						ContextAttribute[] updated = new ContextAttribute[current.length - 1];
+						System.arraycopy(current, 0, updated, 0, i);
+						System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+						attributeTable.put(this, updated);
+					}
+					parametersChanged();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the epoch of this context, which is incremented when the active value or the parameters
+	 * of this context change
+	 * @return the epoch
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Increments the epoch of this context. The subclasses call this method when their parameters
+	 * (e.g. the location of a LocationContext) change.
+	 */
+	protected void parametersChanged() {
+		EPOCH.incrementAndGet(this);
+	}
+
+	/**
+	 * Gets the attribute of this context with the given name
+	 * @param name the name of the attribute
+	 * @return the attribute, or null if this context has no attribute with the name
+	 */
+	public ContextAttribute getAttribute(String name) {
+		ContextAttribute[] current = getAttributeArray();
+		if (current != null) {
+			for (ContextAttribute attribute : current) {
+				if (attribute.getName().equals(name)) {
+					return attribute;
+				}
+			}
+		}
+		return null;
 	}
 
 	/**
 	 * Gets all the attributes related to this context
 	 * @return the attributes
 	 */
-	@Deprecated
 	public Iterator<ContextAttribute> getAttributes() {
-		return attributes.iterator();
+		ContextAttribute[] current = getAttributeArray();
+		return current != null ? Arrays.asList(current).iterator() : Collections.<ContextAttribute>emptyIterator();
+	}
+
+	// Returns the attributes added to this context, or null if there are none
+	private ContextAttribute[] getAttributeArray() {
+		if (attributeTableSize == 0) {
+			return null;
+		}
+		synchronized (attributeTable) {
+			return attributeTable.get(this);
+		}
 	}
 
 	/**
@@ -171,7 +316,15 @@ public class Context {
 	 * @param listener the ContextListener
 	 */
 	public void registerContextListener(ContextListener listener) {
-		listeners.add(listener);
+		synchronized (this) {
+			ContextListener[] current = listeners;
+			ContextListener[] updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = listener;
+			listeners = updated;
+		}
+		if (listener instanceof Context) {
+			((Context) listener).raiseRank(rank + 1);
+		}
 	}
 
 	/**
@@ -179,7 +332,18 @@ public class Context {
 	 * @param listener the ContextListener
 	 */
 	public void unregisterContextListener(ContextListener listener) {
-		listeners.remove(listener);
+		synchronized (this) {
+			ContextListener[] current = listeners;
+			for (int i = 0; i < current.length; i++) {
+				if (current[i].equals(listener)) {
+					ContextListener[] updated = new ContextListener[current.length - 1];
+					System.arraycopy(current, 0, updated, 0, i);
+					System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+					listeners = current.length > 1 ? updated : NO_LISTENERS;
+					return;
+				}
+			}
+		}
 	}
 
 	/**
@@ -187,7 +351,49 @@ public class Context {
 	 * @return the listeners
 	 */
 	public Iterator<ContextListener> getContextListeners() {
-		return listeners.iterator();
+		return Arrays.asList(listeners).iterator();
+	}
+
+	/**
+	 * Releases the resources of this context, e.g. unregisters the listeners this context has
+	 * registered to other contexts. A disposed context no longer follows the contexts it depends on.
+	 */
+	public void dispose() {
+	}
+
+	/**
+	 * Called by the ContextTransaction for each changed context this context listens to, before
+	 * this context is evaluated once by its contextChanged method. A context, which keeps bookkeeping
+	 * of its inputs, updates it here. The default implementation does nothing.
+	 * @param input the changed context
+	 * @param active the new active value of the changed context
+	 */
+	protected void inputChanged(Context input, boolean active) {
+	}
+
+	// Returns the current listener array, which must not be modified
+	ContextListener[] getListenerArray() {
+		return listeners;
+	}
+
+	/**
+	 * Returns the rank of this context in the propagation order. The rank is 0 for a context, which does
+	 * not listen to other contexts, and larger than the rank of the listened contexts for the others.
+	 * @return the rank
+	 */
+	int getRank() {
+		return rank;
+	}
+
+	private void raiseRank(int minRank) {
+		if (rank < minRank) {
+			rank = minRank;
+			for (ContextListener listener : listeners) {
+				if (listener instanceof Context) {
+					((Context) listener).raiseRank(minRank + 1);
+				}
+			}
+		}
 	}
 
 }
@@ -0,0 +1,212 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ContextActivationLog records the active value changes of the contexts, so that it can be queried
+ * whether a context was active at a given time, and how long a context was active in a time range
+ * or on each day. The log receives the changes as a ContextBatchListener:
+ * <pre>
+ *     ContextActivationLog log = new ContextActivationLog(7 * 24 * 3600 * 1000L);
+ *     myContexts.registerBatchListener(log);
+ *     ...
+ *     boolean wasAtWork = log.wasActive(workContext.getId(), time);
+ * </pre>
+ *
+ * The changes of each context are appended into a primitive long array, in which an entry holds the
+ * time of the change and the new active value. An append takes constant amortized time, and a point
+ * in time query is a binary search. The entries older than the retention time are dropped, except
+ * the latest of them, which gives the active value at the start of the retained history.
+ */
+public class ContextActivationLog implements ContextBatchListener {
+
+    private final long retention;
+    private final Map<String, Entries> logs;
+
+    /**
+     * Creates a ContextActivationLog
+     * @param retention the time in milliseconds the changes are kept
+     */
+    public ContextActivationLog(long retention) {
+        this.retention = retention;
+        this.logs = new HashMap<>();
+    }
+
+    /**
+     * Returns the time the changes are kept
+     * @return the retention time in milliseconds
+     */
+    public long getRetention() {
+        return retention;
+    }
+
+    @Override
+    public void contextsChanged(@NonNull List<ContextChange> changes) {
+        for (int i = 0; i < changes.size(); i++) {
+            ContextChange change = changes.get(i);
+            record(change.getContextId(), change.getNewActive(), change.getTimestamp());
+        }
+    }
+
+    /**
+     * Records an active value change of a context. A time before the last recorded change of
+     * the context is moved to the time of the last change.
+     * @param contextId the context id
+     * @param active the new active value
+     * @param time the time of the change (milliseconds since epoch)
+     */
+    public synchronized void record(@NonNull String contextId, boolean active, long time) {
+        Entries entries = logs.get(contextId);
+        if (entries == null) {
+            entries = new Entries();
+            logs.put(contextId, entries);
+        }
+        entries.append(Math.max(time, 0), active);
+        entries.trim(time - retention);
+    }
+
+    /**
+     * Checks if a context was active at a given time
+     * @param contextId the context id
+     * @param time the time (milliseconds since epoch)
+     * @return true if the context was active, false if it was inactive or nothing is known of the time
+     */
+    public synchronized boolean wasActive(@NonNull String contextId, long time) {
+        Entries entries = logs.get(contextId);
+        if (entries == null) {
+            return false;
+        }
+        int index = entries.indexOf(time);
+        return index >= 0 && isActive(entries.values[index]);
+    }
+
+    /**
+     * Returns the time a context was active in a time range. The time after the current time is not counted.
+     * @param contextId the context id
+     * @param from the start of the range (milliseconds since epoch)
+     * @param to the end of the range (milliseconds since epoch)
+     * @return the active time in milliseconds
+     */
+    public synchronized long getActiveTime(@NonNull String contextId, long from, long to) {
+        Entries entries = logs.get(contextId);
+        to = Math.min(to, System.currentTimeMillis());
+        if (entries == null || to <= from) {
+            return 0;
+        }
+        long activeTime = 0;
+        int index = Math.max(entries.indexOf(from), entries.start);
+        for (int i = index; i < entries.end; i++) {
+            long start = Math.max(getTime(entries.values[i]), from);
+            if (start >= to) {
+                break;
+            }
+            long end = i + 1 < entries.end ? Math.min(getTime(entries.values[i + 1]), to) : to;
+            if (isActive(entries.values[i]) && end > start) {
+                activeTime += end - start;
+            }
+        }
+        return activeTime;
+    }
+
+    /**
+     * Returns the times a context was active on consecutive days in the default time zone
+     * @param contextId the context id
+     * @param day a time on the first day (milliseconds since epoch)
+     * @param days the number of days
+     * @return the active times in milliseconds, one for each day
+     */
+    public long[] getDailyActiveTimes(@NonNull String contextId, long day, int days) {
+        long[] activeTimes = new long[Math.max(days, 0)];
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(day);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        for (int i = 0; i < activeTimes.length; i++) {
+            long dayStart = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            activeTimes[i] = getActiveTime(contextId, dayStart, calendar.getTimeInMillis());
+        }
+        return activeTimes;
+    }
+
+    /**
+     * Returns the number of the recorded changes of a context
+     * @param contextId the context id
+     * @return the number of changes
+     */
+    public synchronized int size(@NonNull String contextId) {
+        Entries entries = logs.get(contextId);
+        return entries != null ? entries.end - entries.start : 0;
+    }
+
+    /**
+     * Removes the recorded changes of all contexts
+     */
+    public synchronized void clear() {
+        logs.clear();
+    }
+
+    private static long getTime(long value) {
+        return value >>> 1;
+    }
+
+    private static boolean isActive(long value) {
+        return (value & 1) != 0;
+    }
+
+    // The changes of a context: the time shifted left by one bit and the active value in the lowest bit
+    private static class Entries {
+        long[] values = new long[8];
+        int start;
+        int end;
+
+        void append(long time, boolean active) {
+            if (end > start) {
+                time = Math.max(time, getTime(values[end - 1]));
+            }
+            if (end == values.length) {
+                if (start >= values.length / 2) {
+                    // the trimmed entries make room
+                    System.arraycopy(values, start, values, 0, end - start);
+                    end -= start;
+                    start = 0;
+                } else {
+                    values = Arrays.copyOf(values, 2 * values.length);
+                }
+            }
+            values[end++] = time << 1 | (active ? 1 : 0);
+        }
+
+        // Drops the entries before the cutoff time, except the latest of them
+        void trim(long cutoff) {
+            while (start + 1 < end && getTime(values[start + 1]) <= cutoff) {
+                start++;
+            }
+        }
+
+        // Returns the index of the last entry at or before the time, or -1 if there is none
+        int indexOf(long time) {
+            int low = start;
+            int high = end - 1;
+            int index = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (getTime(values[middle]) <= time) {
+                    index = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return index;
+        }
+    }
+}
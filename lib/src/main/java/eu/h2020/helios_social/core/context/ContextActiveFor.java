@@ -0,0 +1,121 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is defined by an other context and this context is active when the related context
+ * has been active continuously for at least a given duration (e.g. "at work for at least 10 minutes").
+ * The class extends the base class Context.<br/>
+ *
+ * The end of the duration is scheduled in the shared ContextTimer, so the context needs no thread
+ * or TimeSensor of its own. A related context, which is active when this context is created, is
+ * considered to become active at the creation time.<br/>
+ *
+ * The context active value is updated using the setActive method. The current value of the context
+ * can always be checked using the isActive method of the context.</br>
+ *
+ * If the application needs to track the
+ * changes in the active value of the context then the application should implement also
+ * the ContextListener interface {@see eu.h2020.helios_social.core.context.ContextListener} and
+ * register the context for the listener.
+ */
+public class ContextActiveFor extends Context implements ContextListener {
+
+    private final Context context;
+    private final long duration;
+    private final ContextTimer timer;
+    private long activeSince = -1;  // the time the related context became active, -1 if inactive
+    private ContextTimer.Timeout timeout;
+
+    /**
+     * Creates a ContextActiveFor context
+     * @param name the name of the context
+     * @param context the related context
+     * @param duration the duration in milliseconds
+     */
+    public ContextActiveFor(String name, @NonNull Context context, long duration) {
+        this(null, name, context, duration);
+    }
+
+    /**
+     * Creates a ContextActiveFor context
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param context the related context
+     * @param duration the duration in milliseconds
+     */
+    public ContextActiveFor(String id, String name, @NonNull Context context, long duration) {
+        this(id, name, context, duration, ContextTimer.getDefault());
+    }
+
+    /**
+     * Creates a ContextActiveFor context, which uses the given timer
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param context the related context
+     * @param duration the duration in milliseconds
+     * @param timer the timer, which gives the time and runs the delayed changes
+     */
+    public ContextActiveFor(String id, String name, @NonNull Context context, long duration, @NonNull ContextTimer timer) {
+        super(id, name, context.isActive() && duration <= 0);
+        this.context = context;
+        this.duration = Math.max(duration, 0);
+        this.timer = timer;
+        context.registerContextListener(this);
+        update();
+    }
+
+    /**
+     * Returns the related context of this
+     * @return the context
+     */
+    public Context getRelatedContext() {
+        return context;
+    }
+
+    /**
+     * Returns the duration the related context must be active
+     * @return the duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public void contextChanged(boolean active) {
+        update();
+    }
+
+    private synchronized void update() {
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+        if (!context.isActive()) {
+            activeSince = -1;
+            setActive(false);
+            return;
+        }
+        long now = timer.now();
+        if (activeSince < 0) {
+            activeSince = now;
+        }
+        long remaining = activeSince + duration - now;
+        if (remaining <= 0) {
+            setActive(true);
+        } else {
+            timeout = timer.schedule(this::update, remaining, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        context.unregisterContextListener(this);
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * This class is a compound context defined by a list of other contexts and the context is active when
+ * all the related contexts are active (n-ary AND operation). The class extends the class ContextAtLeast,
+ * and a change in a related context is evaluated in constant time.<br/>
+ *
+ * The context active value is updated using the setActive method. The current value of the context
+ * can always be checked using the isActive method of the context.</br>
+ *
+ * If the application needs to track the
+ * changes in the active value of the context then the application should implement also
+ * the ContextListener interface {@see eu.h2020.helios_social.core.context.ContextListener} and
+ * register the context for the listener.
+ */
+public class ContextAll extends ContextAtLeast {
+
+    /**
+     * Creates a ContextAll
+     * @param name the name of the context
+     * @param contexts the related contexts
+     */
+    public ContextAll(String name, @NonNull List<Context> contexts) {
+        this(null, name, contexts);
+    }
+
+    /**
+     * Creates a ContextAll
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param contexts the related contexts
+     */
+    public ContextAll(String id, String name, @NonNull List<Context> contexts) {
+        super(id, name, contexts.size(), contexts);
+    }
+}
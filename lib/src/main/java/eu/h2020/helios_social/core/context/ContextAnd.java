@@ -65,4 +65,10 @@ public class ContextAnd extends Context implements ContextListener {
         setActive(contextA.isActive() && contextB.isActive());
     }
 
+    @Override
+    public void dispose() {
+        contextA.unregisterContextListener(this);
+        contextB.unregisterContextListener(this);
+    }
+
 }
@@ -0,0 +1,152 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is a compound context defined by a list of other contexts and the context is active when
+ * at least k of the related contexts are active (k-of-n operation). The class extends the base class Context.<br/>
+ *
+ * The context keeps a count of the active related contexts, which is updated when a related context
+ * changes, so that the cost of an update does not depend on the number of the related contexts.
+ * The count is kept with the last seen active value of each related context under a lock, so
+ * a related context, which changes in another thread while this context is created, is counted once.<br/>
+ *
+ * The context active value is updated using the setActive method. The current value of the context
+ * can always be checked using the isActive method of the context.</br>
+ *
+ * If the application needs to track the
+ * changes in the active value of the context then the application should implement also
+ * the ContextListener interface {@see eu.h2020.helios_social.core.context.ContextListener} and
+ * register the context for the listener.
+ */
+public class ContextAtLeast extends Context implements ContextListener {
+
+    private final List<Context> contexts;
+    private final int minActive;
+    private final Map<Context, Integer> indexes; // the indexes of the distinct related contexts
+    private final Context[] inputs;        // the distinct related contexts
+    private final int[] multiplicities;    // the number of times each distinct context is related
+    private final boolean[] states;        // the last seen active values, guarded by states
+    private int activeCount;               // guarded by states
+
+    /**
+     * Creates a ContextAtLeast
+     * @param name the name of the context
+     * @param minActive the minimum number of active related contexts
+     * @param contexts the related contexts
+     */
+    public ContextAtLeast(String name, int minActive, @NonNull List<Context> contexts) {
+        this(null, name, minActive, contexts);
+    }
+
+    /**
+     * Creates a ContextAtLeast
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param minActive the minimum number of active related contexts
+     * @param contexts the related contexts
+     */
+    public ContextAtLeast(String id, String name, int minActive, @NonNull List<Context> contexts) {
+        super(id, name, false);
+        this.contexts = Collections.unmodifiableList(new ArrayList<>(contexts));
+        this.minActive = minActive;
+        this.indexes = new IdentityHashMap<>();
+        List<Context> distinct = new ArrayList<>();
+        for (Context context : this.contexts) {
+            if (!indexes.containsKey(context)) {
+                indexes.put(context, distinct.size());
+                distinct.add(context);
+            }
+        }
+        this.inputs = distinct.toArray(new Context[0]);
+        this.multiplicities = new int[inputs.length];
+        for (Context context : this.contexts) {
+            multiplicities[indexes.get(context)]++;
+        }
+        this.states = new boolean[inputs.length];
+        for (Context context : inputs) {
+            context.registerContextListener(this);
+        }
+        // the listeners are registered before counting, so that a change after the count is not lost.
+        // A change notified before or after the count only updates the last seen value, so it is counted once.
+        synchronized (states) {
+            for (int i = 0; i < inputs.length; i++) {
+                states[i] = inputs[i].isActive();
+                if (states[i]) {
+                    activeCount += multiplicities[i];
+                }
+            }
+        }
+        update();
+    }
+
+    /**
+     * Returns the related contexts
+     * @return the list of contexts
+     */
+    public List<Context> getContexts() {
+        return contexts;
+    }
+
+    /**
+     * Returns the minimum number of active related contexts, which makes this context active
+     * @return the minimum number
+     */
+    public int getMinActive() {
+        return minActive;
+    }
+
+    /**
+     * Returns the number of active related contexts
+     * @return the number of contexts
+     */
+    public int getActiveCount() {
+        synchronized (states) {
+            return activeCount;
+        }
+    }
+
+    @Override
+    protected void inputChanged(Context input, boolean active) {
+        Integer index = indexes.get(input);
+        if (index == null) {
+            return;
+        }
+        synchronized (states) {
+            // the current value, so that a late notification of an older change is not counted
+            boolean current = input.isActive();
+            if (states[index] != current) {
+                states[index] = current;
+                activeCount += current ? multiplicities[index] : -multiplicities[index];
+            }
+        }
+    }
+
+    @Override
+    public void contextChanged(boolean active) {
+        update();
+    }
+
+    // Sets the active value from the count of the active related contexts
+    private void update() {
+        // repeat if the count changed in another thread before the active value was set
+        boolean value;
+        do {
+            value = getActiveCount() >= minActive;
+            setActive(value);
+        } while (value != getActiveCount() >= minActive);
+    }
+
+    @Override
+    public void dispose() {
+        for (Context context : inputs) {
+            context.unregisterContextListener(this);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package eu.h2020.helios_social.core.context;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -9,12 +10,21 @@ import java.util.List;
  * A context attribute includes a name and a value.
  * It can also be related to one or more context sources,
  * and the value of the attribute may be determined
- * by the sources (i.e. sensors or other data sources).
+ * by the sources (i.e. sensors or other data sources).<br/>
+ *
+ * The value of an attribute has a version, which is incremented on each change, so that a value
+ * derived from the attribute can be cached and validated by comparing the version. The typed
+ * subclasses (IntContextAttribute, LongContextAttribute, DoubleContextAttribute and
+ * BooleanContextAttribute) read and write their values without boxing.
  */
 public abstract class ContextAttribute {
 
 	private final String attributeName;
 	private final List<ContextSource> sources;
+	private volatile long version;
+	private volatile ContextAttributeListener[] listeners;
+
+	private static final ContextAttributeListener[] NO_LISTENERS = new ContextAttributeListener[0];
 
 	/**
 	 * Creates an context attribute
@@ -23,6 +33,7 @@ public abstract class ContextAttribute {
 	public ContextAttribute(String attributeName) {
 		this.attributeName = attributeName;
 		this.sources = new ArrayList<ContextSource>();
+		this.listeners = NO_LISTENERS;
 	}
 
 	/**
@@ -63,4 +74,57 @@ public abstract class ContextAttribute {
 	public void removeContextSource(ContextSource source) {
 		sources.remove(source);
 	}
+
+	/**
+	 * Gets the version of the attribute value, which is incremented on each change
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Registers a listener, which receives the value changes of this attribute
+	 * @param listener the ContextAttributeListener
+	 */
+	public void registerAttributeListener(ContextAttributeListener listener) {
+		synchronized (this) {
+			ContextAttributeListener[] current = listeners;
+			ContextAttributeListener[] updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = listener;
+			listeners = updated;
+		}
+	}
+
+	/**
+	 * Unregisters a ContextAttributeListener
+	 * @param listener the ContextAttributeListener
+	 */
+	public void unregisterAttributeListener(ContextAttributeListener listener) {
+		synchronized (this) {
+			ContextAttributeListener[] current = listeners;
+			for (int i = 0; i < current.length; i++) {
+				if (current[i].equals(listener)) {
+					ContextAttributeListener[] updated = new ContextAttributeListener[current.length - 1];
+					System.arraycopy(current, 0, updated, 0, i);
+					System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+					listeners = current.length > 1 ? updated : NO_LISTENERS;
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Increments the version of the attribute value and notifies the listeners.
+	 * The subclasses call this method after their value changed.
+	 */
+	protected void valueChanged() {
+		synchronized (this) {
+			version++;
+		}
+		for (ContextAttributeListener listener : listeners) {
+			listener.attributeChanged(this);
+		}
+	}
 }
@@ -0,0 +1,18 @@
+package eu.h2020.helios_social.core.context;
+
+/**
+ * ContextAttributeListener is an interface for tracking the value changes of context attributes.
+ * The listener receives the attribute, so that it can read a typed value without boxing, e.g.
+ * {@link eu.h2020.helios_social.core.context.DoubleContextAttribute#getDouble()}.
+ * In order to register a listener for an attribute, see the method <br/>
+ * {@link eu.h2020.helios_social.core.context.ContextAttribute#registerAttributeListener}.
+ */
+public interface ContextAttributeListener {
+
+    /**
+     * This method is called when the attribute value changed.
+     *
+     * @param attribute the changed attribute
+     */
+    void attributeChanged(ContextAttribute attribute);
+}
@@ -0,0 +1,24 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * ContextBatchListener is an interface for tracking the active value changes of many contexts.
+ *
+ * The method contextsChanged receives all the net changes of one propagation round
+ * (see {@link eu.h2020.helios_social.core.context.ContextTransaction}) at once, in propagation order.
+ * A batch listener is registered for all contexts with
+ * {@link eu.h2020.helios_social.core.context.ContextTransaction#registerBatchListener}, or for the
+ * contexts of MyContexts with MyContexts.registerBatchListener.
+ */
+public interface ContextBatchListener {
+
+    /**
+     * This method is called when the active values of contexts changed.
+     *
+     * @param changes the immutable list of changes
+     */
+    void contextsChanged(@NonNull List<ContextChange> changes);
+}
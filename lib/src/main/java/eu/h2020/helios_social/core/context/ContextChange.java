@@ -0,0 +1,68 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ContextChange is an immutable record of a change in the active value of a context.
+ * The changes of one propagation round are delivered to ContextBatchListeners.
+ * @see eu.h2020.helios_social.core.context.ContextBatchListener
+ */
+public final class ContextChange {
+
+    private final String contextId;
+    private final boolean oldActive;
+    private final boolean newActive;
+    private final long timestamp;
+
+    /**
+     * Creates a ContextChange
+     * @param contextId the identifier of the context
+     * @param oldActive the active value before the change
+     * @param newActive the active value after the change
+     * @param timestamp the time of the change (milliseconds since epoch)
+     */
+    public ContextChange(@NonNull String contextId, boolean oldActive, boolean newActive, long timestamp) {
+        this.contextId = contextId;
+        this.oldActive = oldActive;
+        this.newActive = newActive;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the identifier of the changed context
+     * @return the context id
+     */
+    @NonNull
+    public String getContextId() {
+        return contextId;
+    }
+
+    /**
+     * Returns the active value before the change
+     * @return the old active value
+     */
+    public boolean getOldActive() {
+        return oldActive;
+    }
+
+    /**
+     * Returns the active value after the change
+     * @return the new active value
+     */
+    public boolean getNewActive() {
+        return newActive;
+    }
+
+    /**
+     * Returns the time of the change
+     * @return the time in milliseconds since epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return contextId + ":" + oldActive + "->" + newActive + "@" + timestamp;
+    }
+}
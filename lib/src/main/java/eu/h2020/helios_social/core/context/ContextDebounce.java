@@ -0,0 +1,160 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is defined by an other context and this context follows the active value of the related
+ * context with hysteresis, so that it does not flap when the related context changes rapidly
+ * (e.g. a LocationContext at the boundary of its area). The class extends the base class Context.<br/>
+ *
+ * A change of the related context is followed, when the related context has kept its new value for
+ * the settle time. After a change, this context stays active at least the minimum on time, and inactive
+ * at least the minimum off time. The delayed changes are run by the shared ContextTimer, or by
+ * the timer given to the constructor.<br/>
+ *
+ * The context active value is updated using the setActive method. The current value of the context
+ * can always be checked using the isActive method of the context.</br>
+ *
+ * If the application needs to track the
+ * changes in the active value of the context then the application should implement also
+ * the ContextListener interface {@see eu.h2020.helios_social.core.context.ContextListener} and
+ * register the context for the listener.
+ */
+public class ContextDebounce extends Context implements ContextListener {
+
+    private final Context context;
+    private final long minOnTime;
+    private final long minOffTime;
+    private final long settleTime;
+    private final ContextTimer timer;
+    private boolean lastInput;
+    private long inputChangeTime;   // the time of the last change of the related context
+    private long outputChangeTime;  // the time of the last change of this context
+    private ContextTimer.Timeout timeout;
+
+    /**
+     * Creates a ContextDebounce context
+     * @param name the name of the context
+     * @param context the related context
+     * @param minOnTime the minimum time in milliseconds this context stays active
+     * @param minOffTime the minimum time in milliseconds this context stays inactive
+     * @param settleTime the time in milliseconds the related context must keep its value to be followed
+     */
+    public ContextDebounce(String name, @NonNull Context context, long minOnTime, long minOffTime, long settleTime) {
+        this(null, name, context, minOnTime, minOffTime, settleTime);
+    }
+
+    /**
+     * Creates a ContextDebounce context
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param context the related context
+     * @param minOnTime the minimum time in milliseconds this context stays active
+     * @param minOffTime the minimum time in milliseconds this context stays inactive
+     * @param settleTime the time in milliseconds the related context must keep its value to be followed
+     */
+    public ContextDebounce(String id, String name, @NonNull Context context, long minOnTime, long minOffTime, long settleTime) {
+        this(id, name, context, minOnTime, minOffTime, settleTime, ContextTimer.getDefault());
+    }
+
+    /**
+     * Creates a ContextDebounce context, which runs its delayed changes on the given timer
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param context the related context
+     * @param minOnTime the minimum time in milliseconds this context stays active
+     * @param minOffTime the minimum time in milliseconds this context stays inactive
+     * @param settleTime the time in milliseconds the related context must keep its value to be followed
+     * @param timer the timer, which gives the time and runs the delayed changes
+     */
+    public ContextDebounce(String id, String name, @NonNull Context context, long minOnTime, long minOffTime,
+                           long settleTime, @NonNull ContextTimer timer) {
+        super(id, name, context.isActive());
+        this.context = context;
+        this.minOnTime = Math.max(minOnTime, 0);
+        this.minOffTime = Math.max(minOffTime, 0);
+        this.settleTime = Math.max(settleTime, 0);
+        this.timer = timer;
+        this.lastInput = context.isActive();
+        this.inputChangeTime = timer.now();
+        this.outputChangeTime = Long.MIN_VALUE / 2;
+        context.registerContextListener(this);
+    }
+
+    /**
+     * Returns the related context of this
+     * @return the context
+     */
+    public Context getDebouncedContext() {
+        return context;
+    }
+
+    /**
+     * Returns the minimum time this context stays active
+     * @return the time in milliseconds
+     */
+    public long getMinOnTime() {
+        return minOnTime;
+    }
+
+    /**
+     * Returns the minimum time this context stays inactive
+     * @return the time in milliseconds
+     */
+    public long getMinOffTime() {
+        return minOffTime;
+    }
+
+    /**
+     * Returns the time the related context must keep its value to be followed
+     * @return the time in milliseconds
+     */
+    public long getSettleTime() {
+        return settleTime;
+    }
+
+    @Override
+    public void contextChanged(boolean active) {
+        synchronized (this) {
+            boolean input = context.isActive();
+            if (input != lastInput) {
+                lastInput = input;
+                inputChangeTime = timer.now();
+            }
+        }
+        update();
+    }
+
+    // Follows the related context, if the settle time and the minimum on or off time have passed.
+    // Otherwise, schedules the update to the time they pass.
+    private synchronized void update() {
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+        boolean input = context.isActive();
+        if (input == isActive()) {
+            return;
+        }
+        long now = timer.now();
+        long changeTime = Math.max(inputChangeTime + settleTime,
+                outputChangeTime + (isActive() ? minOnTime : minOffTime));
+        if (changeTime <= now) {
+            outputChangeTime = now;
+            setActive(input);
+        } else {
+            timeout = timer.schedule(this::update, changeTime - now, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        context.unregisterContextListener(this);
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+/**
+ * This class is a compound context defined by two other contexts A and B and the context is active
+ * when B became active while A was active, or within a given time window after A was last active
+ * (A followed by B). The context stays active as long as B is active. The class extends the base
+ * class Context.<br/>
+ *
+ * The context is evaluated when A or B changes, so it needs no timer.<br/>
+ *
+ * The context active value is updated using the setActive method. The current value of the context
+ * can always be checked using the isActive method of the context.</br>
+ *
+ * If the application needs to track the
+ * changes in the active value of the context then the application should implement also
+ * the ContextListener interface {@see eu.h2020.helios_social.core.context.ContextListener} and
+ * register the context for the listener.
+ */
+public class ContextFollowedBy extends Context implements ContextListener {
+
+    private final Context contextA;
+    private final Context contextB;
+    private final long window;
+    private final ContextTimer timer;
+    private boolean lastA;
+    private boolean lastB;
+    private long inactiveTimeA = Long.MIN_VALUE;   // the time A became inactive, MIN_VALUE if never
+
+    /**
+     * Creates a ContextFollowedBy context
+     * @param name the name of the context
+     * @param contextA the context A
+     * @param contextB the context B
+     * @param window the time window in milliseconds
+     */
+    public ContextFollowedBy(String name, @NonNull Context contextA, @NonNull Context contextB, long window) {
+        this(null, name, contextA, contextB, window);
+    }
+
+    /**
+     * Creates a ContextFollowedBy context
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param contextA the context A
+     * @param contextB the context B
+     * @param window the time window in milliseconds
+     */
+    public ContextFollowedBy(String id, String name, @NonNull Context contextA, @NonNull Context contextB, long window) {
+        this(id, name, contextA, contextB, window, ContextTimer.getDefault());
+    }
+
+    /**
+     * Creates a ContextFollowedBy context, which reads the time from the given timer
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param contextA the context A
+     * @param contextB the context B
+     * @param window the time window in milliseconds
+     * @param timer the timer, which gives the time
+     */
+    public ContextFollowedBy(String id, String name, @NonNull Context contextA, @NonNull Context contextB, long window,
+                             @NonNull ContextTimer timer) {
+        super(id, name, false);
+        this.contextA = contextA;
+        this.contextB = contextB;
+        this.window = Math.max(window, 0);
+        this.timer = timer;
+        this.lastA = contextA.isActive();
+        this.lastB = contextB.isActive();
+        contextA.registerContextListener(this);
+        contextB.registerContextListener(this);
+    }
+
+    /**
+     * Returns the context A, which is followed by B
+     * @return the context
+     */
+    public Context getContextA() {
+        return contextA;
+    }
+
+    /**
+     * Returns the context B, which follows A
+     * @return the context
+     */
+    public Context getContextB() {
+        return contextB;
+    }
+
+    /**
+     * Returns the time window, in which B must follow A
+     * @return the window in milliseconds
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    @Override
+    public synchronized void contextChanged(boolean active) {
+        boolean activeA = contextA.isActive();
+        boolean activeB = contextB.isActive();
+        long now = timer.now();
+        if (lastA && !activeA) {
+            inactiveTimeA = now;
+        }
+        if (activeB && !lastB) {
+            setActive(activeA || inactiveTimeA != Long.MIN_VALUE && now - inactiveTimeA <= window);
+        } else if (!activeB) {
+            setActive(false);
+        }
+        lastA = activeA;
+        lastB = activeB;
+    }
+
+    @Override
+    public void dispose() {
+        contextA.unregisterContextListener(this);
+        contextB.unregisterContextListener(this);
+    }
+}
@@ -53,4 +53,9 @@ public class ContextNot extends Context implements ContextListener {
         setActive(!context.isActive());
     }
 
+    @Override
+    public void dispose() {
+        context.unregisterContextListener(this);
+    }
+
 }
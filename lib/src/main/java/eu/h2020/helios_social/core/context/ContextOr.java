@@ -72,4 +72,10 @@ public class ContextOr extends Context implements ContextListener {
         return contextB;
     }
 
+    @Override
+    public void dispose() {
+        contextA.unregisterContextListener(this);
+        contextB.unregisterContextListener(this);
+    }
+
 }
@@ -0,0 +1,64 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+
+/**
+ * ContextPublisher publishes the active value of a context as a reactive streams Publisher.
+ * The subscribers receive the current active value and its changes, honoring their demand:
+ * a slow subscriber receives only the latest value, when it requests more values.
+ * <pre>
+ *     new ContextPublisher(context, executor).subscribe(subscriber);
+ * </pre>
+ * The publisher listens to the context only while it has subscribers.
+ * @see ConflatingPublisher
+ */
+public class ContextPublisher extends ConflatingPublisher<Boolean> {
+
+    private final Context context;
+    private final ContextListener listener = active -> publish();
+
+    /**
+     * Creates a ContextPublisher, which delivers the values in the thread, which changed the context
+     * or requested more values
+     * @param context the context
+     */
+    public ContextPublisher(@NonNull Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Creates a ContextPublisher
+     * @param context the context
+     * @param executor the executor, which delivers the values, or null to deliver in the calling thread
+     */
+    public ContextPublisher(@NonNull Context context, Executor executor) {
+        super(executor);
+        this.context = context;
+    }
+
+    /**
+     * Returns the published context
+     * @return the context
+     */
+    public Context getContext() {
+        return context;
+    }
+
+    @NonNull
+    @Override
+    protected Boolean getState() {
+        return context.isActive();
+    }
+
+    @Override
+    protected void onFirstSubscription() {
+        context.registerContextListener(listener);
+    }
+
+    @Override
+    protected void onLastSubscription() {
+        context.unregisterContextListener(listener);
+    }
+}
@@ -0,0 +1,304 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ContextRuleEngine compiles a set of composite contexts (rules) into a flat evaluation program.
+ * The composites ContextAnd, ContextOr, ContextNot and ContextAtLeast (including ContextAll and
+ * ContextAny) are compiled, and all the other contexts are the leaves of the rules.<br/>
+ *
+ * Each context has a dense integer id: the leaves have ids 0 ... getLeafCount()-1, and the composites
+ * the following ids in topological order, so that the operands of a composite have smaller ids than
+ * the composite. The active states are kept in a bitset indexed by the ids. Each composite is compiled
+ * into a threshold operation: it is active when at least threshold of its operands are active, or
+ * for ContextNot, when less than one operand is active. The operands and the dependents of the contexts
+ * are kept in flat arrays (compressed sparse rows).<br/>
+ *
+ * A leaf change marks its dependents dirty, and the evaluate method re-evaluates only the dirty
+ * composites in one loop in id order, without listener calls. The engine evaluates the rules
+ * independently of the listeners of the compiled Context objects, and it does not change the Context
+ * objects. This class is not thread-safe.
+ * <pre>
+ *     ContextRuleEngine engine = new ContextRuleEngine(rules);
+ *     engine.setActive(engine.getId(leafContext), true);
+ *     int n = engine.evaluate();
+ *     for (int i = 0; i < n; i++) {
+ *         Context changed = engine.getContext(engine.getChangedId(i));
+ *     }
+ * </pre>
+ */
+public class ContextRuleEngine {
+
+    private final Context[] contexts;         // the contexts by id
+    private final Map<Context, Integer> ids;
+    private final int leafCount;
+    // the program: composite id - leafCount is the index of the operation
+    private final int[] thresholds;
+    private final boolean[] negated;
+    private final int[] operandStart;         // operands of composite c: operands[operandStart[c] ... operandStart[c+1]-1]
+    private final int[] operands;
+    private final int[] dependentStart;       // dependents of context i: dependents[dependentStart[i] ... dependentStart[i+1]-1]
+    private final int[] dependents;
+    // the state
+    private final long[] active;
+    private final long[] dirty;
+    private final int[] changed;
+    private int changedCount;
+
+    /**
+     * Creates a ContextRuleEngine, and compiles the given rules and all the contexts they depend on.
+     * The initial state of the leaves is read from the leaf contexts.
+     * @param rules the composite contexts
+     */
+    public ContextRuleEngine(@NonNull Collection<? extends Context> rules) {
+        // order the contexts so that the operands of each composite are before the composite
+        List<Context> leaves = new ArrayList<>();
+        List<Context> composites = new ArrayList<>();
+        Set<Context> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Context> stack = new ArrayDeque<>();
+        ArrayDeque<Integer> next = new ArrayDeque<>();
+        for (Context rule : rules) {
+            if (!visited.add(rule)) {
+                continue;
+            }
+            stack.push(rule);
+            next.push(0);
+            while (!stack.isEmpty()) {
+                Context context = stack.peek();
+                List<Context> children = getOperands(context);
+                int i = next.pop();
+                if (children != null && i < children.size()) {
+                    next.push(i + 1);
+                    Context child = children.get(i);
+                    if (visited.add(child)) {
+                        stack.push(child);
+                        next.push(0);
+                    }
+                } else {
+                    stack.pop();
+                    if (children == null) {
+                        leaves.add(context);
+                    } else {
+                        composites.add(context);
+                    }
+                }
+            }
+        }
+        int n = leaves.size() + composites.size();
+        this.leafCount = leaves.size();
+        this.contexts = new Context[n];
+        this.ids = new IdentityHashMap<>(n);
+        for (int i = 0; i < n; i++) {
+            contexts[i] = i < leafCount ? leaves.get(i) : composites.get(i - leafCount);
+            ids.put(contexts[i], i);
+        }
+
+        // compile the composites
+        int compositeCount = composites.size();
+        this.thresholds = new int[compositeCount];
+        this.negated = new boolean[compositeCount];
+        this.operandStart = new int[compositeCount + 1];
+        int operandCount = 0;
+        for (Context composite : composites) {
+            operandCount += getOperands(composite).size();
+        }
+        this.operands = new int[operandCount];
+        int[] dependentCounts = new int[n + 1];
+        operandCount = 0;
+        for (int c = 0; c < compositeCount; c++) {
+            Context composite = composites.get(c);
+            List<Context> children = getOperands(composite);
+            operandStart[c] = operandCount;
+            for (Context child : children) {
+                int childId = ids.get(child);
+                operands[operandCount++] = childId;
+                dependentCounts[childId]++;
+            }
+            if (composite instanceof ContextNot) {
+                thresholds[c] = 1;
+                negated[c] = true;
+            } else if (composite instanceof ContextOr) {
+                thresholds[c] = 1;
+            } else if (composite instanceof ContextAnd) {
+                thresholds[c] = children.size();
+            } else {
+                thresholds[c] = ((ContextAtLeast) composite).getMinActive();
+            }
+        }
+        operandStart[compositeCount] = operandCount;
+
+        this.dependentStart = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            dependentStart[i + 1] = dependentStart[i] + dependentCounts[i];
+        }
+        this.dependents = new int[operandCount];
+        int[] fill = new int[n];
+        for (int c = 0; c < compositeCount; c++) {
+            for (int j = operandStart[c]; j < operandStart[c + 1]; j++) {
+                int operand = operands[j];
+                dependents[dependentStart[operand] + fill[operand]++] = c + leafCount;
+            }
+        }
+
+        this.active = new long[(n + 63) >>> 6];
+        this.dirty = new long[active.length];
+        this.changed = new int[compositeCount];
+        for (int i = 0; i < leafCount; i++) {
+            if (contexts[i].isActive()) {
+                set(active, i);
+            }
+        }
+        for (int c = leafCount; c < n; c++) {
+            set(dirty, c);
+        }
+        evaluate();
+        changedCount = 0;
+    }
+
+    // Returns the operands of a compiled composite, or null if the context is a leaf
+    private static List<Context> getOperands(Context context) {
+        if (context instanceof ContextAnd) {
+            return Arrays.asList(((ContextAnd) context).getContextA(), ((ContextAnd) context).getContextB());
+        } else if (context instanceof ContextOr) {
+            return Arrays.asList(((ContextOr) context).getContextA(), ((ContextOr) context).getContextB());
+        } else if (context instanceof ContextNot) {
+            return Collections.singletonList(((ContextNot) context).getContextNot());
+        } else if (context instanceof ContextAtLeast) {
+            return ((ContextAtLeast) context).getContexts();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of compiled contexts, including the leaves
+     * @return the number of contexts
+     */
+    public int size() {
+        return contexts.length;
+    }
+
+    /**
+     * Returns the number of leaf contexts. The leaves have ids 0 ... getLeafCount()-1.
+     * @return the number of leaves
+     */
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * Returns the id of a compiled context
+     * @param context the context
+     * @return the id, or -1 if the context is not compiled
+     */
+    public int getId(@NonNull Context context) {
+        Integer id = ids.get(context);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the context of an id
+     * @param id the id
+     * @return the context
+     */
+    public Context getContext(int id) {
+        return contexts[id];
+    }
+
+    /**
+     * Returns the active state of a context evaluated by this engine
+     * @param id the id of the context
+     * @return the active state
+     */
+    public boolean isActive(int id) {
+        return get(active, id);
+    }
+
+    /**
+     * Sets the active state of a leaf. The dependent rules are re-evaluated by the evaluate method.
+     * @param leafId the id of the leaf
+     * @param value the active state
+     */
+    public void setActive(int leafId, boolean value) {
+        if (leafId < 0 || leafId >= leafCount) {
+            throw new IllegalArgumentException("Not a leaf context id: " + leafId);
+        }
+        if (get(active, leafId) != value) {
+            active[leafId >>> 6] ^= 1L << leafId;
+            markDependents(leafId);
+        }
+    }
+
+    /**
+     * Reads the active states of the leaves from the leaf contexts
+     */
+    public void readLeaves() {
+        for (int i = 0; i < leafCount; i++) {
+            setActive(i, contexts[i].isActive());
+        }
+    }
+
+    /**
+     * Re-evaluates the rules, which depend on the changed leaves
+     * @return the number of composites, whose active state changed
+     */
+    public int evaluate() {
+        changedCount = 0;
+        for (int w = leafCount >>> 6; w < dirty.length; w++) {
+            while (dirty[w] != 0) {
+                long bit = dirty[w] & -dirty[w];
+                dirty[w] ^= bit;
+                int id = (w << 6) + Long.numberOfTrailingZeros(bit);
+                int c = id - leafCount;
+                int count = 0;
+                for (int j = operandStart[c], end = operandStart[c + 1]; j < end; j++) {
+                    int operand = operands[j];
+                    if ((active[operand >>> 6] & (1L << operand)) != 0) {
+                        count++;
+                    }
+                }
+                boolean value = (count >= thresholds[c]) != negated[c];
+                if (value != ((active[w] & bit) != 0)) {
+                    active[w] ^= bit;
+                    changed[changedCount++] = id;
+                    markDependents(id);
+                }
+            }
+        }
+        return changedCount;
+    }
+
+    /**
+     * Returns the id of a composite changed in the last evaluation
+     * @param i the index, 0 ... the value returned by evaluate - 1
+     * @return the id of the composite
+     */
+    public int getChangedId(int i) {
+        return changed[i];
+    }
+
+    // the dependents have larger ids than the context, so that they are evaluated after it
+    private void markDependents(int id) {
+        for (int j = dependentStart[id], end = dependentStart[id + 1]; j < end; j++) {
+            int dependent = dependents[j];
+            dirty[dependent >>> 6] |= 1L << dependent;
+        }
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+}
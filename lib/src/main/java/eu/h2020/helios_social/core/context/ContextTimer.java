@@ -0,0 +1,305 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ContextTimer is a hashed timer wheel, which runs the delayed tasks of the time dependent contexts
+ * (e.g. ContextDebounce) on one daemon thread. A task is put into the wheel bucket of its deadline tick,
+ * so that scheduling and cancelling take constant time regardless of the number of pending tasks.<br/>
+ *
+ * The timer thread sleeps until the earliest deadline of the pending tasks, and it waits without
+ * a timeout when no tasks are pending, so the wakeups are proportional to the pending deadlines.
+ * The tasks are run in the timer thread, so they should be short.<br/>
+ *
+ * The time dependent contexts read the current time from their timer with the method now, so that
+ * a test can drive them with a manual timer, whose time is advanced explicitly.
+ * <pre>
+ *     ContextTimer.Timeout timeout = ContextTimer.getDefault().schedule(task, 10, TimeUnit.SECONDS);
+ *     timeout.cancel();
+ * </pre>
+ */
+public final class ContextTimer {
+
+    // the default tick duration in milliseconds, which is the resolution of the shared timer
+    private static final long DEFAULT_TICK = 50;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static volatile ContextTimer defaultTimer;
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final boolean manual;    // true if the time is advanced by the advance method
+    private long manualNanos;        // the elapsed time of a manual timer
+    private final Timeout[] wheel;   // the heads of the doubly linked bucket lists
+    private final int mask;
+    private long processedTick;      // the last tick, whose bucket has been processed
+    private int pendingCount;
+    private Thread thread;
+
+    /**
+     * Returns the shared timer of the contexts
+     * @return the ContextTimer
+     */
+    public static ContextTimer getDefault() {
+        ContextTimer timer = defaultTimer;
+        if (timer == null) {
+            synchronized (ContextTimer.class) {
+                if (defaultTimer == null) {
+                    defaultTimer = new ContextTimer(DEFAULT_TICK, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+                }
+                timer = defaultTimer;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Creates a ContextTimer. The timer thread is started when the first task is scheduled.
+     * @param tickDuration the duration of a tick, which is the resolution of the timer
+     * @param unit the time unit of the tick duration
+     * @param wheelSize the number of buckets in the wheel, rounded up to a power of two
+     */
+    public ContextTimer(long tickDuration, @NonNull TimeUnit unit, int wheelSize) {
+        this(tickDuration, unit, wheelSize, false);
+    }
+
+    // Creates a ContextTimer. A manual timer has no thread, and its tasks are run by the advance method.
+    ContextTimer(long tickDuration, @NonNull TimeUnit unit, int wheelSize, boolean manual) {
+        if (tickDuration <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.startNanos = System.nanoTime();
+        this.manual = manual;
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        this.wheel = new Timeout[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules a task to be run once after a delay. The delay is rounded up to the next tick.
+     * @param task the task
+     * @param delay the delay
+     * @param unit the time unit of the delay
+     * @return the Timeout, which can be used to cancel the task
+     */
+    public Timeout schedule(@NonNull Runnable task, long delay, @NonNull TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task);
+        synchronized (this) {
+            long deadline = elapsedNanos() + unit.toNanos(Math.max(delay, 0));
+            // the task is run at the earliest on the next unprocessed tick
+            timeout.deadlineTick = Math.max((deadline + tickNanos - 1) / tickNanos, processedTick + 1);
+            link(timeout);
+            pendingCount++;
+            if (manual) {
+                return timeout;
+            }
+            if (thread == null) {
+                thread = new Thread(this::runTimer, "HeliosContextTimer");
+                thread.setDaemon(true);
+                thread.start();
+            } else {
+                notifyAll();
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * Returns the number of the pending tasks
+     * @return the number of tasks
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Returns the monotonic time of this timer, which is used by the time dependent contexts
+     * @return the time in milliseconds since the timer was created
+     */
+    public synchronized long now() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos());
+    }
+
+    // Advances the time of a manual timer, and runs the tasks, which are due, in the calling thread
+    void advance(long time, @NonNull TimeUnit unit) {
+        if (!manual) {
+            throw new IllegalStateException("Not a manual timer");
+        }
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            manualNanos += unit.toNanos(Math.max(time, 0));
+        }
+        do {
+            expired.clear();
+            synchronized (this) {
+                expire(elapsedNanos() / tickNanos, expired);
+            }
+            runTasks(expired);
+        } while (!expired.isEmpty());
+    }
+
+    private long elapsedNanos() {
+        return manual ? manualNanos : System.nanoTime() - startNanos;
+    }
+
+    private synchronized boolean cancel(Timeout timeout) {
+        if (timeout.state != Timeout.PENDING) {
+            return false;
+        }
+        timeout.state = Timeout.CANCELLED;
+        unlink(timeout);
+        pendingCount--;
+        return true;
+    }
+
+    private void link(Timeout timeout) {
+        int bucket = (int) (timeout.deadlineTick & mask);
+        Timeout head = wheel[bucket];
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        wheel[bucket] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            wheel[(int) (timeout.deadlineTick & mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+    }
+
+    private void runTimer() {
+        List<Timeout> expired = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                while (expired.isEmpty()) {
+                    long tick = elapsedNanos() / tickNanos;
+                    expire(tick, expired);
+                    if (!expired.isEmpty()) {
+                        break;
+                    }
+                    long nextTick = nextTick();
+                    try {
+                        if (nextTick < 0) {
+                            wait();
+                        } else {
+                            long waitNanos = nextTick * tickNanos - elapsedNanos();
+                            if (waitNanos > 0) {
+                                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            runTasks(expired);
+            expired.clear();
+        }
+    }
+
+    private static void runTasks(List<Timeout> expired) {
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Moves the tasks of the buckets up to the given tick into the expired list
+    private void expire(long tick, List<Timeout> expired) {
+        long ticks = Math.min(tick - processedTick, wheel.length);
+        for (long i = 1; i <= ticks; i++) {
+            Timeout timeout = wheel[(int) ((processedTick + i) & mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.deadlineTick <= tick) {
+                    unlink(timeout);
+                    timeout.state = Timeout.EXPIRED;
+                    pendingCount--;
+                    expired.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+        if (tick > processedTick) {
+            processedTick = tick;
+        }
+    }
+
+    // Returns the earliest deadline tick of the pending tasks, or -1 if there are no pending tasks.
+    // A bucket may hold tasks, which are due only after later rotations of the wheel, so the deadlines
+    // of the tasks are compared instead of the positions of the buckets.
+    private long nextTick() {
+        if (pendingCount == 0) {
+            return -1;
+        }
+        long earliest = Long.MAX_VALUE;
+        for (int i = 1; i <= wheel.length; i++) {
+            for (Timeout timeout = wheel[(int) ((processedTick + i) & mask)]; timeout != null; timeout = timeout.next) {
+                earliest = Math.min(earliest, timeout.deadlineTick);
+            }
+            if (earliest <= processedTick + i) {
+                break; // a task in this bucket is due in the current rotation
+            }
+        }
+        return earliest != Long.MAX_VALUE ? earliest : -1;
+    }
+
+    /**
+     * Timeout is a handle of a task scheduled in a ContextTimer
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int EXPIRED = 1;
+        private static final int CANCELLED = 2;
+
+        private final ContextTimer timer;
+        private final Runnable task;
+        private long deadlineTick;
+        private int state;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(ContextTimer timer, Runnable task) {
+            this.timer = timer;
+            this.task = task;
+        }
+
+        /**
+         * Cancels the task, if it has not been run yet
+         * @return true if the task was cancelled
+         */
+        public boolean cancel() {
+            return timer.cancel(this);
+        }
+
+        /**
+         * Checks if the task is still waiting to be run
+         * @return true if the task is pending
+         */
+        public boolean isPending() {
+            synchronized (timer) {
+                return state == PENDING;
+            }
+        }
+    }
+}
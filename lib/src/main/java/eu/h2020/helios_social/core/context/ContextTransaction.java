@@ -0,0 +1,245 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * ContextTransaction propagates the changes of context active values without glitches.
+ * The active value changes made in a transaction are collected, and the changes are propagated when
+ * the outermost transaction commits:
+ * <ul>
+ *     <li>the changed contexts are processed in the order of their rank, which is larger for a
+ *     composite context (e.g. ContextAnd) than for the contexts it listens to. The net change of a
+ *     context only marks the composite contexts registered as its listeners to be evaluated, and
+ *     each marked composite is evaluated once, by calling its contextChanged method, when its own rank
+ *     is processed. A composite, whose two inputs change, is evaluated once with both new inputs.
+ *     The value passed to contextChanged is the new value of the last changed input, so a composite
+ *     should read the values of its inputs, or follow them with Context.inputChanged.</li>
+ *     <li>after the propagation, the other listeners are notified once of the net change of each context.
+ *     A context, which changed and changed back during the transaction, is not notified. The
+ *     PriorityContextListeners of all the changed contexts are notified before the other listeners.</li>
+ * </ul>
+ * For example, a listener of the context "A AND NOT A" is not notified when A changes.
+ * Finally, the registered ContextBatchListeners receive all the net changes as one list.<br/>
+ *
+ * Transactions are thread-local, and they can be nested. Sensor.receiveValue runs in a transaction,
+ * so all the changes caused by one sensor value are propagated together. A setActive call outside
+ * a transaction is propagated immediately.
+ * <pre>
+ *     ContextTransaction.begin();
+ *     try {
+ *         contextA.setActive(true);
+ *         contextB.setActive(false);
+ *     } finally {
+ *         ContextTransaction.commit();
+ *     }
+ * </pre>
+ */
+public final class ContextTransaction {
+
+    private static final ThreadLocal<ContextTransaction> transactions = new ThreadLocal<ContextTransaction>() {
+        @Override
+        protected ContextTransaction initialValue() {
+            return new ContextTransaction();
+        }
+    };
+
+    private static volatile ContextBatchListener[] batchListeners = new ContextBatchListener[0];
+
+    private int depth;
+    private boolean propagating;
+    private long sequence;
+    private final Map<Context, Change> changes = new IdentityHashMap<>();
+    private final Map<Context, Change> evaluations = new IdentityHashMap<>();
+    // at the same rank, the composites are evaluated before their own changes are processed
+    private final PriorityQueue<Change> queue = new PriorityQueue<>(16, (a, b) ->
+            a.rank != b.rank ? Integer.compare(a.rank, b.rank) :
+                    a.evaluation != b.evaluation ? (a.evaluation ? -1 : 1) : Long.compare(a.sequence, b.sequence));
+
+    private ContextTransaction() {
+    }
+
+    /**
+     * Begins a transaction in the current thread
+     */
+    public static void begin() {
+        transactions.get().depth++;
+    }
+
+    /**
+     * Commits the transaction of the current thread. If this is the outermost transaction, the changes
+     * made in the transaction are propagated to the context listeners.
+     */
+    public static void commit() {
+        ContextTransaction transaction = transactions.get();
+        if (transaction.depth <= 0) {
+            throw new IllegalStateException("No transaction to commit");
+        }
+        if (--transaction.depth == 0 && !transaction.propagating) {
+            transaction.propagate();
+        }
+    }
+
+    /**
+     * Runs the given code in a transaction
+     * @param runnable the code
+     */
+    public static void run(@NonNull Runnable runnable) {
+        begin();
+        try {
+            runnable.run();
+        } finally {
+            commit();
+        }
+    }
+
+    /**
+     * Registers a batch listener, which receives the changes of all contexts
+     * @param listener the ContextBatchListener
+     */
+    public static void registerBatchListener(@NonNull ContextBatchListener listener) {
+        synchronized (ContextTransaction.class) {
+            ContextBatchListener[] current = batchListeners;
+            ContextBatchListener[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+            batchListeners = updated;
+        }
+    }
+
+    /**
+     * Unregisters a batch listener
+     * @param listener the ContextBatchListener
+     */
+    public static void unregisterBatchListener(@NonNull ContextBatchListener listener) {
+        synchronized (ContextTransaction.class) {
+            ContextBatchListener[] current = batchListeners;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].equals(listener)) {
+                    ContextBatchListener[] updated = new ContextBatchListener[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    batchListeners = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the current thread is in a transaction
+     * @return true if a transaction is open
+     */
+    public static boolean isActive() {
+        ContextTransaction transaction = transactions.get();
+        return transaction.depth > 0 || transaction.propagating;
+    }
+
+    // Records an active value change of a context. Called by Context.setActive after the value changed.
+    static void changed(@NonNull Context context, boolean active) {
+        ContextTransaction transaction = transactions.get();
+        Change change = transaction.changes.get(context);
+        if (change == null) {
+            change = new Change(context, false, !active, context.getRank(), transaction.sequence++);
+            transaction.changes.put(context, change);
+            transaction.queue.add(change);
+        }
+        change.value = active;
+        if (transaction.depth == 0 && !transaction.propagating) {
+            transaction.propagate();
+        }
+    }
+
+    private void propagate() {
+        List<Change> committed = new ArrayList<>();
+        propagating = true;
+        try {
+            Change change;
+            while ((change = queue.poll()) != null) {
+                if (change.evaluation) {
+                    evaluations.remove(change.context);
+                    ((ContextListener) change.context).contextChanged(change.value);
+                    continue;
+                }
+                changes.remove(change.context);
+                if (change.value != change.initial) {
+                    committed.add(change);
+                    for (ContextListener listener : change.context.getListenerArray()) {
+                        if (listener instanceof Context) {
+                            markChanged((Context) listener, change);
+                        }
+                    }
+                }
+            }
+        } finally {
+            propagating = false;
+            changes.clear();
+            evaluations.clear();
+            queue.clear();
+        }
+        // the bookkeeping listeners see all the changes before the other listeners are notified
+        for (Change committedChange : committed) {
+            for (ContextListener listener : committedChange.context.getListenerArray()) {
+                if (listener instanceof PriorityContextListener) {
+                    listener.contextChanged(committedChange.value);
+                }
+            }
+        }
+        // the changes made by the other listeners are propagated in new transactions
+        for (Change committedChange : committed) {
+            for (ContextListener listener : committedChange.context.getListenerArray()) {
+                if (!(listener instanceof Context) && !(listener instanceof PriorityContextListener)) {
+                    listener.contextChanged(committedChange.value);
+                }
+            }
+        }
+        ContextBatchListener[] listeners = batchListeners;
+        if (listeners.length > 0 && !committed.isEmpty()) {
+            long timestamp = System.currentTimeMillis();
+            List<ContextChange> contextChanges = new ArrayList<>(committed.size());
+            for (Change committedChange : committed) {
+                contextChanges.add(new ContextChange(committedChange.context.getId(), committedChange.initial,
+                        committedChange.value, timestamp));
+            }
+            contextChanges = Collections.unmodifiableList(contextChanges);
+            for (ContextBatchListener listener : listeners) {
+                listener.contextsChanged(contextChanges);
+            }
+        }
+    }
+
+    // Marks a composite context to be evaluated, because its input has changed
+    private void markChanged(Context composite, Change input) {
+        composite.inputChanged(input.context, input.value);
+        Change evaluation = evaluations.get(composite);
+        if (evaluation == null) {
+            evaluation = new Change(composite, true, false, composite.getRank(), sequence++);
+            evaluations.put(composite, evaluation);
+            queue.add(evaluation);
+        }
+        evaluation.value = input.value;
+    }
+
+    private static class Change {
+        final Context context;
+        final boolean evaluation; // an evaluation of a composite context instead of a value change
+        final boolean initial;
+        final int rank;
+        final long sequence;
+        boolean value;
+
+        Change(Context context, boolean evaluation, boolean initial, int rank, long sequence) {
+            this.context = context;
+            this.evaluation = evaluation;
+            this.initial = initial;
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package eu.h2020.helios_social.core.context;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is defined by an other context and this context is active when the related context
+ * became active within a given time window (e.g. "arrived home within the last hour"). The class
+ * extends the base class Context.<br/>
+ *
+ * The context becomes active when the related context becomes active, and it becomes inactive when
+ * the window has passed, even if the related context is still active. The end of the window is
+ * scheduled in the shared ContextTimer. A related context, which is active when this context is
+ * created, is considered to become active at the creation time.<br/>
+ *
+ * The context active value is updated using the setActive method. The current value of the context
+ * can always be checked using the isActive method of the context.</br>
+ *
+ * If the application needs to track the
+ * changes in the active value of the context then the application should implement also
+ * the ContextListener interface {@see eu.h2020.helios_social.core.context.ContextListener} and
+ * register the context for the listener.
+ */
+public class ContextWithin extends Context implements ContextListener {
+
+    private final Context context;
+    private final long window;
+    private final ContextTimer timer;
+    private boolean lastInput;
+    private long activatedTime;     // the time the related context last became active
+    private ContextTimer.Timeout timeout;
+
+    /**
+     * Creates a ContextWithin context
+     * @param name the name of the context
+     * @param context the related context
+     * @param window the time window in milliseconds
+     */
+    public ContextWithin(String name, @NonNull Context context, long window) {
+        this(null, name, context, window);
+    }
+
+    /**
+     * Creates a ContextWithin context
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param context the related context
+     * @param window the time window in milliseconds
+     */
+    public ContextWithin(String id, String name, @NonNull Context context, long window) {
+        this(id, name, context, window, ContextTimer.getDefault());
+    }
+
+    /**
+     * Creates a ContextWithin context, which uses the given timer
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param context the related context
+     * @param window the time window in milliseconds
+     * @param timer the timer, which gives the time and runs the delayed changes
+     */
+    public ContextWithin(String id, String name, @NonNull Context context, long window, @NonNull ContextTimer timer) {
+        super(id, name, false);
+        this.context = context;
+        this.window = Math.max(window, 0);
+        this.timer = timer;
+        context.registerContextListener(this);
+        contextChanged(context.isActive());
+    }
+
+    /**
+     * Returns the related context of this
+     * @return the context
+     */
+    public Context getRelatedContext() {
+        return context;
+    }
+
+    /**
+     * Returns the time window
+     * @return the window in milliseconds
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    @Override
+    public synchronized void contextChanged(boolean active) {
+        boolean input = context.isActive();
+        if (input && !lastInput) {
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            activatedTime = timer.now();
+            setActive(window > 0);
+            timeout = window > 0 ? timer.schedule(this::expire, window, TimeUnit.MILLISECONDS) : null;
+        }
+        lastInput = input;
+    }
+
+    private synchronized void expire() {
+        long remaining = activatedTime + window - timer.now();
+        if (remaining > 0) {
+            timeout = timer.schedule(this::expire, remaining, TimeUnit.MILLISECONDS);
+        } else {
+            timeout = null;
+            setActive(false);
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        context.unregisterContextListener(this);
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package eu.h2020.helios_social.core.context;
+
+/**
+ * DoubleContextAttribute is a context attribute with a double value. The value is read and written
+ * without boxing, and the listeners are notified only when the value changes.
+ */
+public class DoubleContextAttribute extends ContextAttribute {
+
+    private volatile double value;
+
+    /**
+     * Creates a DoubleContextAttribute
+     * @param attributeName the name of this context attribute
+     * @param value the initial value
+     */
+    public DoubleContextAttribute(String attributeName, double value) {
+        super(attributeName);
+        this.value = value;
+    }
+
+    /**
+     * Gets the value of this attribute
+     * @return the value
+     */
+    public double getDouble() {
+        return value;
+    }
+
+    /**
+     * Sets the value of this attribute. The version is incremented and the listeners are notified,
+     * if the value changed.
+     * @param value the value
+     */
+    public void setDouble(double value) {
+        synchronized (this) {
+            if (Double.compare(this.value, value) == 0) {
+                return;
+            }
+            this.value = value;
+        }
+        valueChanged();
+    }
+
+    @Override
+    public Object getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,48 @@
+package eu.h2020.helios_social.core.context;
+
+/**
+ * IntContextAttribute is a context attribute with a int value. The value is read and written
+ * without boxing, and the listeners are notified only when the value changes.
+ */
+public class IntContextAttribute extends ContextAttribute {
+
+    private volatile int value;
+
+    /**
+     * Creates a IntContextAttribute
+     * @param attributeName the name of this context attribute
+     * @param value the initial value
+     */
+    public IntContextAttribute(String attributeName, int value) {
+        super(attributeName);
+        this.value = value;
+    }
+
+    /**
+     * Gets the value of this attribute
+     * @return the value
+     */
+    public int getInt() {
+        return value;
+    }
+
+    /**
+     * Sets the value of this attribute. The version is incremented and the listeners are notified,
+     * if the value changed.
+     * @param value the value
+     */
+    public void setInt(int value) {
+        synchronized (this) {
+            if (this.value == value) {
+                return;
+            }
+            this.value = value;
+        }
+        valueChanged();
+    }
+
+    @Override
+    public Object getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,48 @@
+package eu.h2020.helios_social.core.context;
+
+/**
+ * LongContextAttribute is a context attribute with a long value. The value is read and written
+ * without boxing, and the listeners are notified only when the value changes.
+ */
+public class LongContextAttribute extends ContextAttribute {
+
+    private volatile long value;
+
+    /**
+     * Creates a LongContextAttribute
+     * @param attributeName the name of this context attribute
+     * @param value the initial value
+     */
+    public LongContextAttribute(String attributeName, long value) {
+        super(attributeName);
+        this.value = value;
+    }
+
+    /**
+     * Gets the value of this attribute
+     * @return the value
+     */
+    public long getLong() {
+        return value;
+    }
+
+    /**
+     * Sets the value of this attribute. The version is incremented and the listeners are notified,
+     * if the value changed.
+     * @param value the value
+     */
+    public void setLong(long value) {
+        synchronized (this) {
+            if (this.value == value) {
+                return;
+            }
+            this.value = value;
+        }
+        valueChanged();
+    }
+
+    @Override
+    public Object getValue() {
+        return value;
+    }
+}
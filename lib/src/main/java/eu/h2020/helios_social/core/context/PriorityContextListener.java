@@ -0,0 +1,11 @@
+package eu.h2020.helios_social.core.context;
+
+/**
+ * PriorityContextListener is a ContextListener, which is notified of the net changes of
+ * a transaction before the other listeners, which are not contexts. It is meant for bookkeeping,
+ * which the other listeners may read, e.g. the active set of MyContexts. So, the listener should
+ * return quickly, and it should not change the active values of contexts.
+ * @see ContextTransaction
+ */
+public interface PriorityContextListener extends ContextListener {
+}
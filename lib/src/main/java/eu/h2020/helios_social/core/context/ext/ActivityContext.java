@@ -4,7 +4,13 @@ import android.util.Log;
 
 import com.google.android.gms.location.ActivityRecognitionResult;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import eu.h2020.helios_social.core.context.Context;
+import eu.h2020.helios_social.core.context.ContextAttribute;
+import eu.h2020.helios_social.core.context.IntContextAttribute;
 import eu.h2020.helios_social.core.sensor.SensorValueListener;
 
 /**
@@ -13,14 +19,18 @@ import eu.h2020.helios_social.core.sensor.SensorValueListener;
  * include: IN_VEHICLE, ON_FOOT, RUNNING, WALKING, ON_BICYCLE and STILL.
  * @see com.google.android.gms.location.DetectedActivity
  * This class extends the base class Context.
- * Activity value updates are obtained from ActivitySensor via SensorValueListener
+ * Activity value updates are obtained from ActivitySensor via SensorValueListener.
+ * The latest confidence of the activity is available as the attribute "confidence".
  */
 public class ActivityContext extends Context implements SensorValueListener {
 
     private final int activityType;
-    private int confidence;
+    private final IntContextAttribute confidence;
     private static final String TAG = "HeliosActivityContext";
 
+    /** The name of the confidence attribute */
+    public static final String ATTRIBUTE_CONFIDENCE = "confidence";
+
     /**
      * Creates a ActivityContext
      * @param name the name of the context
@@ -39,7 +49,7 @@ public class ActivityContext extends Context implements SensorValueListener {
     public ActivityContext(String id, String name, int activityType) {
         super(id, name, false);
         this.activityType = activityType;
-        this.confidence = 0;
+        this.confidence = new IntContextAttribute(ATTRIBUTE_CONFIDENCE, 0);
     }
 
     public int getActivityType() {
@@ -51,9 +61,31 @@ public class ActivityContext extends Context implements SensorValueListener {
      * @return the confidence value
      */
     public int getConfidence() {
+        return confidence.getInt();
+    }
+
+    /**
+     * Gets the confidence attribute of the activity
+     * @return the confidence attribute
+     */
+    public IntContextAttribute getConfidenceAttribute() {
         return confidence;
     }
 
+    @Override
+    public ContextAttribute getAttribute(String name) {
+        return ATTRIBUTE_CONFIDENCE.equals(name) ? confidence : super.getAttribute(name);
+    }
+
+    @Override
+    public Iterator<ContextAttribute> getAttributes() {
+        // the confidence attribute is a field, and the added attributes are kept by the base class
+        List<ContextAttribute> attributes = new ArrayList<>();
+        attributes.add(confidence);
+        super.getAttributes().forEachRemaining(attributes::add);
+        return attributes.iterator();
+    }
+
     /**
      * Receive updated activity values from the activity sensor
      * {@link eu.h2020.helios_social.core.sensor.ext.ActivitySensor}.
@@ -65,9 +97,10 @@ public class ActivityContext extends Context implements SensorValueListener {
     public void receiveValue(Object value) {
         Log.d(TAG, "received activity value");
         ActivityRecognitionResult result = (ActivityRecognitionResult) value;
-        confidence = result.getActivityConfidence(activityType);
-        Log.d(TAG, "received confidence value: " + confidence);
-        setActive((confidence >= 70 || (isActive() && confidence >= 30) ));
+        int activityConfidence = result.getActivityConfidence(activityType);
+        confidence.setInt(activityConfidence);
+        Log.d(TAG, "received confidence value: " + activityConfidence);
+        setActive((activityConfidence >= 70 || (isActive() && activityConfidence >= 30) ));
     }
 
 }
@@ -2,20 +2,31 @@ package eu.h2020.helios_social.core.context.ext;
 
 import android.location.Location;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import eu.h2020.helios_social.core.context.Context;
+import eu.h2020.helios_social.core.context.ContextAttribute;
+import eu.h2020.helios_social.core.context.DoubleContextAttribute;
 import eu.h2020.helios_social.core.sensor.SensorValueListener;
 
 /**
  *  LocationContext - a location-based context class.<br/>
  *  This class extends the base class Context, and it
  *  is defined by location center coordinates and radius.
- *  Location value updates are obtained from LocationSensor via SensorValueListener
+ *  Location value updates are obtained from LocationSensor via SensorValueListener.
+ *  The distance of the latest location from the center point is available as the attribute "distance".
  */
 public class LocationContext extends Context implements SensorValueListener {
 
     double lat, lon;
     double radius;
     Location location; // current location
+    final DoubleContextAttribute distance; // the distance in meters of the current location, NaN if unknown
+
+    /** The name of the distance attribute */
+    public static final String ATTRIBUTE_DISTANCE = "distance";
 
     /**
      * Creates a LocationContext.
@@ -46,6 +57,7 @@ public class LocationContext extends Context implements SensorValueListener {
         this.lon = lon;
         this.radius = radius;
         this.location = null;
+        this.distance = new DoubleContextAttribute(ATTRIBUTE_DISTANCE, Double.NaN);
     }
 
     /**
@@ -62,6 +74,7 @@ public class LocationContext extends Context implements SensorValueListener {
      */
     public void setLat(double lat) {
         this.lat = lat;
+        parametersChanged();
     }
 
     /**
@@ -78,6 +91,7 @@ public class LocationContext extends Context implements SensorValueListener {
      */
     public void setLon(double lon) {
         this.lon = lon;
+        parametersChanged();
     }
 
     /**
@@ -94,6 +108,7 @@ public class LocationContext extends Context implements SensorValueListener {
      */
     public void setRadius(double radius) {
         this.radius = radius;
+        parametersChanged();
     }
 
     /**
@@ -105,7 +120,9 @@ public class LocationContext extends Context implements SensorValueListener {
             this.location = location;
             double lat1 = location.getLatitude();
             double lon1 = location.getLongitude();
-            if(distanceLatLon2(lat, lon, lat1, lon1) < radius) {
+            double d = distanceLatLon2(lat, lon, lat1, lon1);
+            distance.setDouble(d);
+            if(d < radius) {
                 // Log.i("LocationContext","updateLocation" + lat1 + ", " + lon1 + getName() + ",true" + getLat() + ',' + getLon());
                 setActive(true);
             } else {
@@ -123,6 +140,36 @@ public class LocationContext extends Context implements SensorValueListener {
         return location;
     }
 
+    /**
+     * Gets the distance of the current location from the center point
+     * @return the distance in meters, or NaN if the location is not known
+     */
+    public double getDistance() {
+        return distance.getDouble();
+    }
+
+    /**
+     * Gets the distance attribute of this context
+     * @return the distance attribute
+     */
+    public DoubleContextAttribute getDistanceAttribute() {
+        return distance;
+    }
+
+    @Override
+    public ContextAttribute getAttribute(String name) {
+        return ATTRIBUTE_DISTANCE.equals(name) ? distance : super.getAttribute(name);
+    }
+
+    @Override
+    public Iterator<ContextAttribute> getAttributes() {
+        // the distance attribute is a field, and the added attributes are kept by the base class
+        List<ContextAttribute> attributes = new ArrayList<>();
+        attributes.add(distance);
+        super.getAttributes().forEachRemaining(attributes::add);
+        return attributes.iterator();
+    }
+
     /**
      * Calculates approximate distance between two points
      */
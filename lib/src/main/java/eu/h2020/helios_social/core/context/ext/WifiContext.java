@@ -42,6 +42,7 @@ public class WifiContext extends Context implements SensorValueListener {
      */
     public void setSsid(String ssid) {
         this.ssid = ssid;
+        parametersChanged();
     }
 
     /**
@@ -3,6 +3,7 @@ package eu.h2020.helios_social.core.info_control;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import eu.h2020.helios_social.core.context.Context;
 import eu.h2020.helios_social.core.info_control.classifier.Classification;
@@ -11,7 +12,7 @@ import eu.h2020.helios_social.core.info_control.classifier.MultiClassNaiveBayes;
 /**
  * ContextClassifier detects context of received message.
  * It uses the @link MultiClassNaiveBayes classifier to classify message text content based on the
- * training data from @link MessageContextDatabase.
+ * training data from @link MessageContextDatabase. The methods of this class are thread-safe.
  * @see InfoControl class, which implements information overload control.
  **/
 public class ContextClassifier {
@@ -29,18 +30,14 @@ public class ContextClassifier {
     }
 
     /**
-     * Trains the model with all the MessageContexts in the training database (MessageContextDatabase)
+     * Trains the model with all the MessageContexts in the training database (MessageContextDatabase).
+     * The model is trained in a database thread, with the messages as they are loaded into the
+     * repository, or as they are read again from the database after the load.
      * @param repository the MessageContextRepository
+     * @return a future, which completes when the model has been trained
      */
-    public void train(MessageContextRepository repository) {
-        Collection<MessageContext> messageContextHistoryList = repository.getMessages();
-        for(MessageContext messageContext: messageContextHistoryList) {
-            String contextId = messageContext.getContextID();
-            String from = messageContext.getFrom();
-            String topic = messageContext.getMessageTopic();
-            String messageText = messageContext.getMessageText();
-            train(contextId, from, topic, messageText);
-        }
+    public CompletableFuture<Void> train(MessageContextRepository repository) {
+        return repository.streamHistory(this::train);
     }
 
     /**
@@ -50,7 +47,7 @@ public class ContextClassifier {
      * @param topic
      * @param text
      */
-    public void train(String contextId, String from, String topic, String text) {
+    public synchronized void train(String contextId, String from, String topic, String text) {
         String content = ((from == null) ? "" : from + " ") +
                 ((topic == null) ? "" : topic + " ") + ((text == null) ? "" : text);
         if(!content.isEmpty()){
@@ -62,7 +59,7 @@ public class ContextClassifier {
      * Trains the model with a MessageContext as a training sample
      * @param messageContext
      */
-    public void train(MessageContext messageContext) {
+    public synchronized void train(MessageContext messageContext) {
         this.train(messageContext.getContextID(), messageContext.getFrom(),
                 messageContext.getMessageTopic(), messageContext.getMessageText());
     }
@@ -74,7 +71,7 @@ public class ContextClassifier {
      * @param text
      * @return
      */
-    public List<ContextProbability> classify(String from, String topic, String text) {
+    public synchronized List<ContextProbability> classify(String from, String topic, String text) {
         ArrayList<ContextProbability> contextProbabilities = new ArrayList<ContextProbability>();
         String content = ((from == null) ? "" : from + " ") +
                 ((topic == null) ? "" : topic + " ") + ((text == null) ? "" : text);
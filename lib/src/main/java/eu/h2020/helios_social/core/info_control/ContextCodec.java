@@ -0,0 +1,69 @@
+package eu.h2020.helios_social.core.info_control;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import eu.h2020.helios_social.core.context.Context;
+
+/**
+ * ContextCodec stores the class-specific parameters of a context type in binary form, and creates
+ * the context from the stored parameters. The codecs are registered into ContextCodecs with a short
+ * type tag, which is stored into MyContextsDatabase together with the encoded parameters.
+ * <pre>
+ *     ContextCodecs.register("myctx", MyContext.class, new ContextCodec&lt;MyContext&gt;() {
+ *         public void encode(MyContext context, DataOutput out) throws IOException {
+ *             out.writeInt(context.getLevel());
+ *         }
+ *         public MyContext decode(String id, String name, boolean active, List&lt;Context&gt; dependencies,
+ *                                 DataInput in) throws IOException {
+ *             return new MyContext(id, name, in.readInt());
+ *         }
+ *     });
+ * </pre>
+ * @param <T> the context type
+ */
+public interface ContextCodec<T extends Context> {
+
+    /**
+     * Returns the contexts, which the given context depends on, e.g. the operands of ContextAnd.
+     * When the contexts are restored, the dependencies are created before the context, and passed
+     * to the decode method in the same order.
+     * @param context the context
+     * @return the list of contexts
+     */
+    default List<Context> getDependencies(@NonNull T context) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Checks if the order of the dependencies does not matter, e.g. for ContextAnd. Then the contexts,
+     * which differ only in the order of their dependencies, are considered structurally identical.
+     * @return true if the context type is commutative
+     */
+    default boolean isCommutative() {
+        return false;
+    }
+
+    /**
+     * Writes the class-specific parameters of the context
+     * @param context the context
+     * @param out the output
+     */
+    void encode(@NonNull T context, @NonNull DataOutput out) throws IOException;
+
+    /**
+     * Creates a context from the parameters written by the encode method
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param active the stored active value of the context
+     * @param dependencies the contexts returned by the getDependencies method
+     * @param in the input
+     * @return the context
+     */
+    T decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) throws IOException;
+}
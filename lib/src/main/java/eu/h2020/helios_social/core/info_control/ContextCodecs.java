@@ -0,0 +1,547 @@
+package eu.h2020.helios_social.core.info_control;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import eu.h2020.helios_social.core.context.Context;
+import eu.h2020.helios_social.core.context.ContextActiveFor;
+import eu.h2020.helios_social.core.context.ContextAll;
+import eu.h2020.helios_social.core.context.ContextAnd;
+import eu.h2020.helios_social.core.context.ContextAny;
+import eu.h2020.helios_social.core.context.ContextAtLeast;
+import eu.h2020.helios_social.core.context.ContextDebounce;
+import eu.h2020.helios_social.core.context.ContextFollowedBy;
+import eu.h2020.helios_social.core.context.ContextNot;
+import eu.h2020.helios_social.core.context.ContextOr;
+import eu.h2020.helios_social.core.context.ContextWithin;
+import eu.h2020.helios_social.core.context.ext.ActivityContext;
+import eu.h2020.helios_social.core.context.ext.LocationContext;
+import eu.h2020.helios_social.core.context.ext.TimeContext;
+import eu.h2020.helios_social.core.context.ext.WifiContext;
+
+/**
+ * ContextCodecs is the registry of the ContextCodecs used in storing contexts into MyContextsDatabase.
+ * Each codec is registered with a short type tag and the context class it creates. A context is
+ * stored with the codec of its class, or of its nearest registered superclass.<br/>
+ *
+ * The encoded parameters of a context start with the ids of its dependencies, so that the dependency
+ * graph of the stored contexts can be built without decoding the contexts.
+ */
+public final class ContextCodecs {
+
+    public static final String TAG_CONTEXT = "ctx";
+    public static final String TAG_AND = "and";
+    public static final String TAG_OR = "or";
+    public static final String TAG_NOT = "not";
+    public static final String TAG_TIME = "time";
+    public static final String TAG_LOCATION = "loc";
+    public static final String TAG_WIFI = "wifi";
+    public static final String TAG_ACTIVITY = "act";
+    public static final String TAG_AT_LEAST = "atleast";
+    public static final String TAG_ALL = "all";
+    public static final String TAG_ANY = "any";
+    public static final String TAG_DEBOUNCE = "debounce";
+    public static final String TAG_ACTIVE_FOR = "activefor";
+    public static final String TAG_WITHIN = "within";
+    public static final String TAG_FOLLOWED_BY = "followedby";
+
+    private static final Map<String, ContextCodec<?>> codecs = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, String> registeredTags = new ConcurrentHashMap<>();
+    // the tags of the context classes found so far, including the unregistered subclasses
+    private static final Map<Class<?>, String> resolvedTags = new ConcurrentHashMap<>();
+
+    static {
+        register(TAG_CONTEXT, Context.class, new ContextCodec<Context>() {
+            @Override
+            public void encode(@NonNull Context context, @NonNull DataOutput out) {
+            }
+
+            @Override
+            public Context decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) {
+                return new Context(id, name, active);
+            }
+        });
+        register(TAG_AND, ContextAnd.class, new ContextCodec<ContextAnd>() {
+            @Override
+            public List<Context> getDependencies(@NonNull ContextAnd context) {
+                return Arrays.asList(context.getContextA(), context.getContextB());
+            }
+
+            @Override
+            public boolean isCommutative() {
+                return true;
+            }
+
+            @Override
+            public void encode(@NonNull ContextAnd context, @NonNull DataOutput out) {
+            }
+
+            @Override
+            public ContextAnd decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) {
+                return new ContextAnd(id, name, dependencies.get(0), dependencies.get(1));
+            }
+        });
+        register(TAG_OR, ContextOr.class, new ContextCodec<ContextOr>() {
+            @Override
+            public List<Context> getDependencies(@NonNull ContextOr context) {
+                return Arrays.asList(context.getContextA(), context.getContextB());
+            }
+
+            @Override
+            public boolean isCommutative() {
+                return true;
+            }
+
+            @Override
+            public void encode(@NonNull ContextOr context, @NonNull DataOutput out) {
+            }
+
+            @Override
+            public ContextOr decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) {
+                return new ContextOr(id, name, dependencies.get(0), dependencies.get(1));
+            }
+        });
+        register(TAG_NOT, ContextNot.class, new ContextCodec<ContextNot>() {
+            @Override
+            public List<Context> getDependencies(@NonNull ContextNot context) {
+                return Arrays.asList(context.getContextNot());
+            }
+
+            @Override
+            public void encode(@NonNull ContextNot context, @NonNull DataOutput out) {
+            }
+
+            @Override
+            public ContextNot decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) {
+                return new ContextNot(id, name, dependencies.get(0));
+            }
+        });
+        register(TAG_AT_LEAST, ContextAtLeast.class, new ContextCodec<ContextAtLeast>() {
+            @Override
+            public List<Context> getDependencies(@NonNull ContextAtLeast context) {
+                return context.getContexts();
+            }
+
+            @Override
+            public boolean isCommutative() {
+                return true;
+            }
+
+            @Override
+            public void encode(@NonNull ContextAtLeast context, @NonNull DataOutput out) throws IOException {
+                out.writeInt(context.getMinActive());
+            }
+
+            @Override
+            public ContextAtLeast decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) throws IOException {
+                return new ContextAtLeast(id, name, in.readInt(), dependencies);
+            }
+        });
+        register(TAG_ALL, ContextAll.class, new ContextCodec<ContextAll>() {
+            @Override
+            public List<Context> getDependencies(@NonNull ContextAll context) {
+                return context.getContexts();
+            }
+
+            @Override
+            public boolean isCommutative() {
+                return true;
+            }
+
+            @Override
+            public void encode(@NonNull ContextAll context, @NonNull DataOutput out) {
+            }
+
+            @Override
+            public ContextAll decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) {
+                return new ContextAll(id, name, dependencies);
+            }
+        });
+        register(TAG_ANY, ContextAny.class, new ContextCodec<ContextAny>() {
+            @Override
+            public List<Context> getDependencies(@NonNull ContextAny context) {
+                return context.getContexts();
+            }
+
+            @Override
+            public boolean isCommutative() {
+                return true;
+            }
+
+            @Override
+            public void encode(@NonNull ContextAny context, @NonNull DataOutput out) {
+            }
+
+            @Override
+            public ContextAny decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) {
+                return new ContextAny(id, name, dependencies);
+            }
+        });
+        register(TAG_DEBOUNCE, ContextDebounce.class, new ContextCodec<ContextDebounce>() {
+            @Override
+            public List<Context> getDependencies(@NonNull ContextDebounce context) {
+                return Arrays.asList(context.getDebouncedContext());
+            }
+
+            @Override
+            public void encode(@NonNull ContextDebounce context, @NonNull DataOutput out) throws IOException {
+                out.writeLong(context.getMinOnTime());
+                out.writeLong(context.getMinOffTime());
+                out.writeLong(context.getSettleTime());
+            }
+
+            @Override
+            public ContextDebounce decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) throws IOException {
+                return new ContextDebounce(id, name, dependencies.get(0), in.readLong(), in.readLong(), in.readLong());
+            }
+        });
+        register(TAG_ACTIVE_FOR, ContextActiveFor.class, new ContextCodec<ContextActiveFor>() {
+            @Override
+            public List<Context> getDependencies(@NonNull ContextActiveFor context) {
+                return Arrays.asList(context.getRelatedContext());
+            }
+
+            @Override
+            public void encode(@NonNull ContextActiveFor context, @NonNull DataOutput out) throws IOException {
+                out.writeLong(context.getDuration());
+            }
+
+            @Override
+            public ContextActiveFor decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) throws IOException {
+                return new ContextActiveFor(id, name, dependencies.get(0), in.readLong());
+            }
+        });
+        register(TAG_WITHIN, ContextWithin.class, new ContextCodec<ContextWithin>() {
+            @Override
+            public List<Context> getDependencies(@NonNull ContextWithin context) {
+                return Arrays.asList(context.getRelatedContext());
+            }
+
+            @Override
+            public void encode(@NonNull ContextWithin context, @NonNull DataOutput out) throws IOException {
+                out.writeLong(context.getWindow());
+            }
+
+            @Override
+            public ContextWithin decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) throws IOException {
+                return new ContextWithin(id, name, dependencies.get(0), in.readLong());
+            }
+        });
+        register(TAG_FOLLOWED_BY, ContextFollowedBy.class, new ContextCodec<ContextFollowedBy>() {
+            @Override
+            public List<Context> getDependencies(@NonNull ContextFollowedBy context) {
+                return Arrays.asList(context.getContextA(), context.getContextB());
+            }
+
+            @Override
+            public void encode(@NonNull ContextFollowedBy context, @NonNull DataOutput out) throws IOException {
+                out.writeLong(context.getWindow());
+            }
+
+            @Override
+            public ContextFollowedBy decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) throws IOException {
+                return new ContextFollowedBy(id, name, dependencies.get(0), dependencies.get(1), in.readLong());
+            }
+        });
+        register(TAG_TIME, TimeContext.class, new ContextCodec<TimeContext>() {
+            @Override
+            public void encode(@NonNull TimeContext context, @NonNull DataOutput out) throws IOException {
+                out.writeLong(context.getStartTime());
+                out.writeLong(context.getEndTime());
+                out.writeInt(context.getRepeat());
+            }
+
+            @Override
+            public TimeContext decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) throws IOException {
+                return new TimeContext(id, name, in.readLong(), in.readLong(), in.readInt());
+            }
+        });
+        register(TAG_LOCATION, LocationContext.class, new ContextCodec<LocationContext>() {
+            @Override
+            public void encode(@NonNull LocationContext context, @NonNull DataOutput out) throws IOException {
+                out.writeDouble(context.getLat());
+                out.writeDouble(context.getLon());
+                out.writeDouble(context.getRadius());
+            }
+
+            @Override
+            public LocationContext decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) throws IOException {
+                return new LocationContext(id, name, in.readDouble(), in.readDouble(), in.readDouble());
+            }
+        });
+        register(TAG_WIFI, WifiContext.class, new ContextCodec<WifiContext>() {
+            @Override
+            public void encode(@NonNull WifiContext context, @NonNull DataOutput out) throws IOException {
+                // the ssid may be null, so it is preceded by a presence flag
+                String ssid = context.getSsid();
+                out.writeBoolean(ssid != null);
+                if (ssid != null) {
+                    out.writeUTF(ssid);
+                }
+            }
+
+            @Override
+            public WifiContext decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) throws IOException {
+                return new WifiContext(id, name, in.readBoolean() ? in.readUTF() : null);
+            }
+        });
+        register(TAG_ACTIVITY, ActivityContext.class, new ContextCodec<ActivityContext>() {
+            @Override
+            public void encode(@NonNull ActivityContext context, @NonNull DataOutput out) throws IOException {
+                out.writeInt(context.getActivityType());
+            }
+
+            @Override
+            public ActivityContext decode(String id, String name, boolean active, @NonNull List<Context> dependencies, @NonNull DataInput in) throws IOException {
+                return new ActivityContext(id, name, in.readInt());
+            }
+        });
+    }
+
+    private ContextCodecs() {
+    }
+
+    /**
+     * Registers a codec for a context class. The codec is used also for the subclasses of the context
+     * class, which have no codec of their own.
+     * @param tag the type tag, which is stored into the database
+     * @param contextClass the context class
+     * @param codec the codec
+     * @throws IllegalArgumentException if the tag is already registered for another class
+     */
+    public static synchronized <T extends Context> void register(@NonNull String tag, @NonNull Class<T> contextClass,
+                                                                 @NonNull ContextCodec<T> codec) {
+        String registeredTag = registeredTags.get(contextClass);
+        if (codecs.containsKey(tag) && !tag.equals(registeredTag)) {
+            throw new IllegalArgumentException("Context codec tag " + tag + " is already registered");
+        }
+        if (registeredTag != null) {
+            codecs.remove(registeredTag);
+        }
+        codecs.put(tag, codec);
+        registeredTags.put(contextClass, tag);
+        resolvedTags.clear();
+    }
+
+    /**
+     * Returns the type tag of a context class
+     * @param contextClass the context class
+     * @return the tag of the class or of its nearest registered superclass
+     */
+    @NonNull
+    public static String getTag(@NonNull Class<? extends Context> contextClass) {
+        String tag = resolvedTags.get(contextClass);
+        if (tag == null) {
+            Class<?> c = contextClass;
+            while ((tag = registeredTags.get(c)) == null) {
+                c = c.getSuperclass();
+            }
+            resolvedTags.put(contextClass, tag);
+        }
+        return tag;
+    }
+
+    /**
+     * Returns the codec registered with a type tag
+     * @param tag the type tag
+     * @return the codec, or null if there is no codec with the tag
+     */
+    public static ContextCodec<?> getCodec(String tag) {
+        return tag != null ? codecs.get(tag) : null;
+    }
+
+    /**
+     * Encodes the dependencies and the parameters of a context
+     * @param tag the type tag of the context
+     * @param context the context
+     * @return the encoded context
+     */
+    @SuppressWarnings("unchecked")
+    static byte[] encode(@NonNull String tag, @NonNull Context context) throws IOException {
+        ContextCodec<Context> codec = (ContextCodec<Context>) codecs.get(tag);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<Context> dependencies = codec.getDependencies(context);
+        out.writeShort(dependencies.size());
+        for (Context dependency : dependencies) {
+            out.writeUTF(dependency.getId());
+        }
+        codec.encode(context, out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the structural key of a context, which is equal for the contexts of the same type with
+     * the same dependencies and parameters. The dependencies of a commutative type are sorted by id.
+     * @param tag the type tag of the context
+     * @param context the context
+     * @return the key, or null if the context has no dependencies
+     */
+    @SuppressWarnings("unchecked")
+    static String getStructuralKey(@NonNull String tag, @NonNull Context context) throws IOException {
+        ContextCodec<Context> codec = (ContextCodec<Context>) codecs.get(tag);
+        List<Context> dependencies = codec.getDependencies(context);
+        String[] ids = new String[dependencies.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dependencies.get(i).getId();
+        }
+        if (ids.length == 0) {
+            return null;
+        }
+        if (codec.isCommutative()) {
+            Arrays.sort(ids);
+        }
+        StringBuilder key = new StringBuilder(tag);
+        for (String id : ids) {
+            key.append('\u0000').append(id);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        codec.encode(context, out);
+        out.flush();
+        // the parameter bytes are mapped one to one to characters
+        key.append('\u0001').append(new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1));
+        return key.toString();
+    }
+
+    /**
+     * Reads the ids of the dependencies of an encoded context
+     * @param data the encoded context
+     * @return the list of context ids
+     */
+    static List<String> getDependencyIds(byte[] data) throws IOException {
+        if (data == null) {
+            return Collections.emptyList();
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int n = in.readUnsignedShort();
+        List<String> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ids.add(in.readUTF());
+        }
+        return ids;
+    }
+
+    /**
+     * Creates a context from its encoded dependencies and parameters
+     * @param tag the type tag of the context
+     * @param id the identifier of the context
+     * @param name the name of the context
+     * @param active the stored active value of the context
+     * @param data the encoded context
+     * @param contexts the already created contexts, which include the dependencies of the context
+     * @return the context, or null if the tag is unknown or a dependency is missing
+     */
+    @SuppressWarnings("unchecked")
+    static Context decode(String tag, String id, String name, boolean active, @NonNull byte[] data,
+                          @NonNull Map<String, Context> contexts) throws IOException {
+        ContextCodec<Context> codec = (ContextCodec<Context>) getCodec(tag);
+        if (codec == null) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int n = in.readUnsignedShort();
+        List<Context> dependencies = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Context dependency = contexts.get(in.readUTF());
+            if (dependency == null) {
+                return null;
+            }
+            dependencies.add(dependency);
+        }
+        return codec.decode(id, name, active, dependencies, in);
+    }
+
+    /**
+     * Returns the type tag of a context class stored by the version 1 of MyContextsDatabase
+     * @param className the canonical name of the context class
+     * @return the tag, or null if the class is not found
+     */
+    static String getLegacyTag(String className) {
+        for (Map.Entry<Class<?>, String> entry : registeredTags.entrySet()) {
+            if (entry.getKey().getCanonicalName().equals(className)) {
+                return entry.getValue();
+            }
+        }
+        try {
+            Class<?> contextClass = Class.forName(className);
+            if (Context.class.isAssignableFrom(contextClass)) {
+                return getTag(contextClass.asSubclass(Context.class));
+            }
+        } catch (ClassNotFoundException e) {
+        }
+        return null;
+    }
+
+    /**
+     * Encodes the JSON parameters of a built-in context type stored by the version 1
+     * of MyContextsDatabase
+     * @param tag the type tag of the context
+     * @param parameters the JSON parameters
+     * @return the encoded context, or null if the tag is not a built-in tag
+     */
+    static byte[] encodeLegacy(String tag, @NonNull JSONObject parameters) throws JSONException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        switch (tag != null ? tag : "") {
+            case TAG_CONTEXT:
+                out.writeShort(0);
+                break;
+            case TAG_AND:
+            case TAG_OR:
+                out.writeShort(2);
+                out.writeUTF(parameters.getString("contextA"));
+                out.writeUTF(parameters.getString("contextB"));
+                break;
+            case TAG_NOT:
+                out.writeShort(1);
+                out.writeUTF(parameters.getString("context"));
+                break;
+            case TAG_TIME:
+                out.writeShort(0);
+                out.writeLong(parameters.getLong("start_time"));
+                out.writeLong(parameters.getLong("end_time"));
+                out.writeInt(parameters.getInt("repeat"));
+                break;
+            case TAG_LOCATION:
+                out.writeShort(0);
+                out.writeDouble(parameters.getDouble("latitude"));
+                out.writeDouble(parameters.getDouble("longitude"));
+                out.writeDouble(parameters.getDouble("radius"));
+                break;
+            case TAG_WIFI:
+                out.writeShort(0);
+                out.writeBoolean(!parameters.isNull("ssid"));
+                if (!parameters.isNull("ssid")) {
+                    out.writeUTF(parameters.getString("ssid"));
+                }
+                break;
+            case TAG_ACTIVITY:
+                out.writeShort(0);
+                out.writeInt(parameters.getInt("activity_type"));
+                break;
+            default:
+                return null;
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,226 @@
+package eu.h2020.helios_social.core.info_control;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import eu.h2020.helios_social.core.context.Context;
+import eu.h2020.helios_social.core.context.ContextListener;
+import eu.h2020.helios_social.core.context.PriorityContextListener;
+
+/**
+ * ContextRegistry gives each context of MyContexts a dense integer index, and keeps the active
+ * contexts as a bitset by the index. The bitset is updated by a PriorityContextListener of each
+ * context, so it is up to date when the other listeners of the contexts are notified.
+ * The indexes of the removed contexts are reused. The immutable snapshot of the registry is
+ * rebuilt only after a change: the arrays of all the contexts are rebuilt only when a context
+ * is added or removed, and an active value change rebuilds only the active set. Rebuilding the
+ * active set copies and scans the bitset, one word per 64 contexts, so it takes time proportional
+ * to the number of active contexts plus the number of contexts divided by 64. The epoch of
+ * the registry is incremented on each change.
+ */
+class ContextRegistry {
+
+    private final Map<String, Integer> indexes;
+    private Context[] contexts;
+    private ContextListener[] listeners;
+    private long[] active;
+    private int[] freeIndexes;
+    private int freeCount;
+    private int nextIndex;
+    private int size;
+    private volatile ContextSnapshot snapshot; // null if the registry has changed
+    private Context[] indexedContexts;          // the contexts of the snapshot by index, null if added or removed
+    private Context[] allContexts;              // the contexts of the snapshot, null if added or removed
+    private volatile long epoch;
+
+    ContextRegistry() {
+        this.indexes = new HashMap<>();
+        this.contexts = new Context[16];
+        this.listeners = new ContextListener[16];
+        this.active = new long[1];
+        this.freeIndexes = new int[16];
+    }
+
+    /**
+     * Adds a context into the registry
+     * @param context the context
+     * @return the index of the context
+     */
+    int add(@NonNull Context context) {
+        ContextListener listener;
+        int index;
+        synchronized (this) {
+            Integer existing = indexes.get(context.getId());
+            if (existing != null) {
+                return existing;
+            }
+            if (freeCount > 0) {
+                index = freeIndexes[--freeCount];
+            } else {
+                index = nextIndex++;
+                if (index == contexts.length) {
+                    contexts = Arrays.copyOf(contexts, 2*index);
+                    listeners = Arrays.copyOf(listeners, 2*index);
+                    freeIndexes = Arrays.copyOf(freeIndexes, 2*index);
+                    active = Arrays.copyOf(active, (2*index + 63) >>> 6);
+                }
+            }
+            indexes.put(context.getId(), index);
+            contexts[index] = context;
+            listener = (PriorityContextListener) changed -> updateActive(index, context);
+            listeners[index] = listener;
+            size++;
+            membershipChanged();
+        }
+        context.registerContextListener(listener);
+        updateActive(index, context);
+        return index;
+    }
+
+    /**
+     * Removes a context from the registry
+     * @param contextId the context id
+     */
+    void remove(@NonNull String contextId) {
+        Context context;
+        ContextListener listener;
+        synchronized (this) {
+            Integer index = indexes.remove(contextId);
+            if (index == null) {
+                return;
+            }
+            context = contexts[index];
+            listener = listeners[index];
+            contexts[index] = null;
+            listeners[index] = null;
+            active[index >>> 6] &= ~(1L << index);
+            freeIndexes[freeCount++] = index;
+            size--;
+            membershipChanged();
+        }
+        context.unregisterContextListener(listener);
+    }
+
+    /**
+     * Removes all the contexts from the registry
+     */
+    void clear() {
+        Context[] removed;
+        ContextListener[] removedListeners;
+        synchronized (this) {
+            removed = contexts;
+            removedListeners = listeners;
+            indexes.clear();
+            contexts = new Context[16];
+            listeners = new ContextListener[16];
+            active = new long[1];
+            freeIndexes = new int[16];
+            freeCount = 0;
+            nextIndex = 0;
+            size = 0;
+            membershipChanged();
+        }
+        for (int i = 0; i < removed.length; i++) {
+            if (removed[i] != null) {
+                removed[i].unregisterContextListener(removedListeners[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of a context
+     * @param contextId the context id
+     * @return the index, or -1 if the context is not in the registry
+     */
+    synchronized int getIndex(@NonNull String contextId) {
+        Integer index = indexes.get(contextId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Returns the immutable snapshot of the contexts and their active values
+     * @return the snapshot
+     */
+    ContextSnapshot getSnapshot() {
+        ContextSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    snapshot = createSnapshot();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the epoch, which is incremented when a context is added or removed, or when
+     * the active value of a context changes
+     * @return the epoch
+     */
+    long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Increments the epoch, e.g. when the parameters of a context have changed
+     */
+    synchronized void touch() {
+        changed();
+    }
+
+    private void changed() {
+        snapshot = null;
+        epoch++;
+    }
+
+    private void membershipChanged() {
+        indexedContexts = null;
+        allContexts = null;
+        changed();
+    }
+
+    private synchronized void updateActive(int index, Context context) {
+        if (contexts[index] != context) {
+            return; // removed
+        }
+        long bit = 1L << index;
+        boolean wasActive = (active[index >>> 6] & bit) != 0;
+        if (context.isActive() != wasActive) {
+            active[index >>> 6] ^= bit;
+            changed();
+        }
+    }
+
+    private ContextSnapshot createSnapshot() {
+        int activeCount = 0;
+        for (long word : active) {
+            activeCount += Long.bitCount(word);
+        }
+        Context[] activeContexts = new Context[activeCount];
+        int n = 0;
+        for (int w = 0; w < active.length; w++) {
+            long word = active[w];
+            while (word != 0) {
+                activeContexts[n++] = contexts[(w << 6) + Long.numberOfTrailingZeros(word)];
+                word &= word - 1;
+            }
+        }
+        if (allContexts == null) {
+            indexedContexts = Arrays.copyOf(contexts, nextIndex);
+            allContexts = new Context[size];
+            n = 0;
+            for (int i = 0; i < nextIndex; i++) {
+                if (contexts[i] != null) {
+                    allContexts[n++] = contexts[i];
+                }
+            }
+        }
+        // the arrays of all the contexts are shared by the snapshots until a context is added or removed
+        return new ContextSnapshot(epoch, indexedContexts, active.clone(), allContexts, activeContexts);
+    }
+}
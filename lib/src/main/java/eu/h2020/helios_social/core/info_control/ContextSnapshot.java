@@ -0,0 +1,80 @@
+package eu.h2020.helios_social.core.info_control;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import eu.h2020.helios_social.core.context.Context;
+
+/**
+ * ContextSnapshot is an immutable view of the contexts of MyContexts and their active values
+ * at one moment. A snapshot can be shared across threads without copying.
+ * @see MyContexts#getSnapshot()
+ */
+public final class ContextSnapshot {
+
+    private final long epoch;
+    private final List<Context> contexts;
+    private final List<Context> activeContexts;
+    private final long[] active;       // the active set by the dense context index
+    private final Context[] indexed;   // the contexts by the dense context index, null if free
+
+    ContextSnapshot(long epoch, Context[] indexed, long[] active, Context[] contexts, Context[] activeContexts) {
+        this.epoch = epoch;
+        this.indexed = indexed;
+        this.active = active;
+        this.contexts = Collections.unmodifiableList(Arrays.asList(contexts));
+        this.activeContexts = Collections.unmodifiableList(Arrays.asList(activeContexts));
+    }
+
+    /**
+     * Returns the epoch of MyContexts, when the snapshot was taken
+     * @return the epoch
+     * @see MyContexts#getEpoch()
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns all the contexts
+     * @return the immutable list of contexts
+     */
+    public List<Context> getContexts() {
+        return contexts;
+    }
+
+    /**
+     * Returns the active contexts
+     * @return the immutable list of active contexts
+     */
+    public List<Context> getActiveContexts() {
+        return activeContexts;
+    }
+
+    /**
+     * Returns the number of active contexts
+     * @return the number of active contexts
+     */
+    public int getActiveCount() {
+        return activeContexts.size();
+    }
+
+    /**
+     * Returns the context of a dense context index
+     * @param index the index
+     * @return the context, or null if there is no context with the index
+     */
+    public Context getContext(int index) {
+        return index >= 0 && index < indexed.length ? indexed[index] : null;
+    }
+
+    /**
+     * Checks if the context of a dense context index was active
+     * @param index the index
+     * @return true if the context was active
+     */
+    public boolean isActive(int index) {
+        return index >= 0 && (index >>> 6) < active.length && (active[index >>> 6] & (1L << index)) != 0;
+    }
+}
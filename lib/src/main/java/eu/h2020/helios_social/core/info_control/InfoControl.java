@@ -21,6 +21,7 @@ public class InfoControl implements InformationOverloadControl {
     private final MyContexts myContexts;
     private final TrustManager trustManager;
     private final MessageContextRepository repository;
+    private volatile ContextSnapshot contexts; // the cached contexts, valid while the epoch of MyContexts is unchanged
 
     // default weights. Their values are in range [0.0,1.0], and the sum of weights should be 1
     private double context_weight = 0.6;
@@ -52,6 +53,10 @@ public class InfoControl implements InformationOverloadControl {
         this.classifier = new ContextClassifier(myContexts);
         this.trustManager = trustManager;
         this.repository = repository;
+        if (repository != null) {
+            // train the classifier with the message history as it is read from the database
+            repository.streamHistory(classifier::train);
+        }
     }
 
     /**
@@ -110,7 +115,7 @@ public class InfoControl implements InformationOverloadControl {
      * @return filled contextProbabilities
      */
     private List<ContextProbability> fillProbabilities(List<ContextProbability> contextProbabilities) {
-        for(Context context: myContexts.getContexts()) {
+        for(Context context: getSnapshot().getContexts()) {
             addContextProbability(contextProbabilities, context, 0.0);
         }
         return contextProbabilities;
@@ -168,7 +173,7 @@ public class InfoControl implements InformationOverloadControl {
      */
     public void sendMessage(String to, String topic, String message) {
         // System.out.println("InfoControl: to:" + to + ",topic=" + topic + ",message=" + message);
-        List<Context> activeContexts = myContexts.getActiveContexts();
+        List<Context> activeContexts = getSnapshot().getActiveContexts();
         long timestamp = System.currentTimeMillis();
         for(Context context: activeContexts) {
             MessageContext messageContext = new MessageContext(context.getId(), to, timestamp, -1,
@@ -179,7 +184,7 @@ public class InfoControl implements InformationOverloadControl {
 
     @Override
     public void readMessage(MessageInfo message) {
-        List<Context> activeContexts = myContexts.getActiveContexts();
+        List<Context> activeContexts = getSnapshot().getActiveContexts();
         long timestamp = System.currentTimeMillis();
         int reactionTime = (int)(timestamp - message.getTimestamp());
         for(Context context: activeContexts) {
@@ -322,6 +327,16 @@ public class InfoControl implements InformationOverloadControl {
         return myContexts.getActiveContexts();
     }
 
+    // Returns the cached contexts, which are refreshed when the epoch of MyContexts has changed
+    private ContextSnapshot getSnapshot() {
+        ContextSnapshot current = contexts;
+        if (current == null || current.getEpoch() != myContexts.getEpoch()) {
+            current = myContexts.getSnapshot();
+            contexts = current;
+        }
+        return current;
+    }
+
     private static double sigmoid(double x) {
         return 1 / (1 + Math.exp(-x));
     }
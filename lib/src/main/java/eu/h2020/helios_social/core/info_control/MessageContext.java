@@ -3,6 +3,7 @@ package eu.h2020.helios_social.core.info_control;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
 import androidx.room.PrimaryKey;
 
 /**
@@ -30,6 +31,8 @@ public class MessageContext {
     String messageTopic; // if available
     @ColumnInfo(name = "message_text")
     String messageText;  // if available    // message topic ja content   may be combined?
+    @Ignore
+    int key;    // the client-side key of an inserted message until its id is known, or 0
 
 
     /**
@@ -3,6 +3,7 @@ package eu.h2020.helios_social.core.info_control;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 
 import java.util.List;
@@ -14,17 +15,35 @@ import java.util.List;
 public interface MessageContextDao {
 
     @Insert
-    void insert(MessageContext messageContext);
+    long insert(MessageContext messageContext);
+
+    @Insert
+    long[] insertAll(List<MessageContext> messageContexts);
 
     @Delete
     void delete(MessageContext messageContext);
 
+    @Query("DELETE FROM message_context_table WHERE id = :id")
+    void deleteById(int id);
+
     @Query("DELETE FROM message_context_table")
     void deleteAll();
 
     @Query("SELECT * FROM message_context_table")
     List<MessageContext> getMessages();
 
+    @Query("SELECT * FROM (SELECT * FROM message_context_table ORDER BY id DESC LIMIT :maxSize) ORDER BY id ASC")
+    List<MessageContext> getNewestMessages(int maxSize);
+
+    @Query("SELECT IFNULL(MAX(id), 0) FROM message_context_table")
+    int getMaxId();
+
+    @Query("SELECT IFNULL(MIN(id), 0) FROM (SELECT id FROM message_context_table WHERE id <= :maxId ORDER BY id DESC LIMIT :maxSize)")
+    int getFirstIdOfNewest(int maxId, int maxSize);
+
+    @Query("SELECT * FROM message_context_table WHERE id > :afterId AND id <= :maxId ORDER BY id ASC LIMIT :limit")
+    List<MessageContext> getMessagesAfter(int afterId, int maxId, int limit);
+
     @Query("SELECT * FROM message_context_table WHERE context=:contextId AND sender=:from")
     List<MessageContext> getMessagesByContextFrom(String contextId, String from);
 
@@ -36,4 +55,13 @@ public interface MessageContextDao {
 
     @Query("DELETE FROM message_context_table where id NOT IN (SELECT id from message_context_table ORDER BY id DESC LIMIT :maxSize)")
     void shrinkDb(int maxSize);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void putSketches(List<ReactionTimeSketchEntity> sketches);
+
+    @Query("SELECT * FROM reaction_time_sketch_table")
+    List<ReactionTimeSketchEntity> getSketches();
+
+    @Query("DELETE FROM reaction_time_sketch_table")
+    void deleteSketches();
 }
@@ -2,18 +2,22 @@ package eu.h2020.helios_social.core.info_control;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * MessageContextDatabase provides functionality to save, load, modify
  * and search MessageContext information.
  */
-@Database(entities = {MessageContext.class}, version = 1, exportSchema = false)
+@Database(entities = {MessageContext.class, ReactionTimeSketchEntity.class}, version = 2, exportSchema = false)
 public abstract class MessageContextDatabase extends RoomDatabase {
 
     public abstract MessageContextDao messageContextDao();
@@ -22,6 +26,20 @@ public abstract class MessageContextDatabase extends RoomDatabase {
     private static final int NUMBER_OF_THREADS = 4;
     static final ExecutorService databaseWriteExecutor =
             Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    // executes the write-behind flushes in order
+    static final ScheduledExecutorService databaseWriteScheduler =
+            Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Adds the table of the saved reaction time sketches
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS reaction_time_sketch_table (sketch_key TEXT NOT NULL, " +
+                    "context TEXT, sender TEXT, data BLOB, PRIMARY KEY(sketch_key))");
+        }
+    };
 
     static MessageContextDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
@@ -29,6 +47,7 @@ public abstract class MessageContextDatabase extends RoomDatabase {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                             MessageContextDatabase.class, "message_context_history_database")
+                            .addMigrations(MIGRATION_1_2)
                             .build();
                 }
             }
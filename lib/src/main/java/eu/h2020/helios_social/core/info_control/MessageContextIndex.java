@@ -0,0 +1,437 @@
+package eu.h2020.helios_social.core.info_control;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MessageContextIndex keeps incrementally updated aggregates of the message history.
+ * The aggregates are grouped by (context, sender), by context, by sender and over the whole
+ * history. MessageContextRepository updates the index when messages are inserted or removed,
+ * so that the message counts and medians can be answered without scanning the history.
+ */
+class MessageContextIndex {
+
+    private final Map<String, Map<String, Aggregate>> byContextFrom;
+    private final Map<String, Aggregate> byContext;
+    private final Map<String, Aggregate> byFrom;
+    private final Aggregate total;
+
+    MessageContextIndex() {
+        this.byContextFrom = new HashMap<>();
+        this.byContext = new HashMap<>();
+        this.byFrom = new HashMap<>();
+        this.total = new Aggregate();
+    }
+
+    /**
+     * Adds a message into the aggregates
+     * @param messageContext the MessageContext
+     */
+    void add(MessageContext messageContext) {
+        add(messageContext.getContextID(), messageContext.getFrom(), messageContext.getReactionTime(),
+                messageContext.getImportance(), messageContext.getTrust());
+    }
+
+    /**
+     * Adds a message into the aggregates
+     * @param contextId the context id
+     * @param from the sender (or null)
+     * @param reactionTime the reaction time, or -1 if not defined
+     * @param importance the importance, or 0 if not defined
+     * @param trust the trust value, or -1.0 if not defined
+     */
+    synchronized void add(String contextId, String from, int reactionTime, int importance, float trust) {
+        total.add(reactionTime, importance, trust);
+        getOrCreate(byContext, contextId).add(reactionTime, importance, trust);
+        if (from != null) {
+            getOrCreate(byFrom, from).add(reactionTime, importance, trust);
+            Map<String, Aggregate> contextFrom = byContextFrom.get(contextId);
+            if (contextFrom == null) {
+                contextFrom = new HashMap<>();
+                byContextFrom.put(contextId, contextFrom);
+            }
+            getOrCreate(contextFrom, from).add(reactionTime, importance, trust);
+        }
+    }
+
+    /**
+     * Removes a message from the aggregates
+     * @param messageContext the MessageContext
+     */
+    void remove(MessageContext messageContext) {
+        remove(messageContext.getContextID(), messageContext.getFrom(), messageContext.getReactionTime(),
+                messageContext.getImportance(), messageContext.getTrust());
+    }
+
+    /**
+     * Removes a message from the aggregates
+     * @param contextId the context id
+     * @param from the sender (or null)
+     * @param reactionTime the reaction time, or -1 if not defined
+     * @param importance the importance, or 0 if not defined
+     * @param trust the trust value, or -1.0 if not defined
+     */
+    synchronized void remove(String contextId, String from, int reactionTime, int importance, float trust) {
+        total.remove(reactionTime, importance, trust);
+        remove(byContext, contextId, reactionTime, importance, trust);
+        if (from != null) {
+            remove(byFrom, from, reactionTime, importance, trust);
+            Map<String, Aggregate> contextFrom = byContextFrom.get(contextId);
+            if (contextFrom != null) {
+                remove(contextFrom, from, reactionTime, importance, trust);
+                if (contextFrom.isEmpty()) {
+                    byContextFrom.remove(contextId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the aggregates
+     */
+    synchronized void clear() {
+        byContextFrom.clear();
+        byContext.clear();
+        byFrom.clear();
+        total.clear();
+    }
+
+    /**
+     * Returns the number of messages
+     * @param contextId the context id, or null for any context
+     * @param from the sender, or null for any sender
+     * @return the number of messages
+     */
+    synchronized int getSize(String contextId, String from) {
+        Aggregate aggregate = get(contextId, from);
+        return aggregate != null ? aggregate.size : 0;
+    }
+
+    /**
+     * Returns the median reaction time of the messages
+     * @param contextId the context id, or null for any context
+     * @param from the sender, or null for any sender
+     * @return the median reaction time, or -1 if there are no messages with reaction time
+     */
+    synchronized int getMedianReactionTime(String contextId, String from) {
+        Aggregate aggregate = get(contextId, from);
+        if (aggregate == null || aggregate.reactionTimes.size() == 0) {
+            return -1;
+        }
+        SortedValues values = aggregate.reactionTimes;
+        int n = values.size();
+        if (n % 2 == 0) {
+            return ((int) values.get(n/2) + (int) values.get(n/2 - 1))/2;
+        }
+        return (int) values.get(n/2);
+    }
+
+    /**
+     * Returns the median importance of the messages
+     * @param contextId the context id, or null for any context
+     * @param from the sender, or null for any sender
+     * @return the median importance, or -1 if there are no messages with importance
+     */
+    synchronized int getMedianImportance(String contextId, String from) {
+        Aggregate aggregate = get(contextId, from);
+        if (aggregate == null || aggregate.importanceCount == 0) {
+            return -1;
+        }
+        int n = aggregate.importanceCount;
+        if (n % 2 == 0) {
+            return (aggregate.getImportance(n/2) + aggregate.getImportance(n/2 - 1))/2;
+        }
+        return aggregate.getImportance(n/2);
+    }
+
+    /**
+     * Returns the median trust of the messages
+     * @param contextId the context id, or null for any context
+     * @param from the sender, or null for any sender
+     * @return the median trust, or -1.0 if there are no messages with trust value
+     */
+    synchronized double getMedianTrust(String contextId, String from) {
+        Aggregate aggregate = get(contextId, from);
+        if (aggregate == null || aggregate.trusts.size() == 0) {
+            return -1.0;
+        }
+        SortedValues values = aggregate.trusts;
+        int n = values.size();
+        if (n % 2 == 0) {
+            return (values.get(n/2) + values.get(n/2 - 1))/2;
+        }
+        return values.get(n/2);
+    }
+
+    private Aggregate get(String contextId, String from) {
+        if (contextId == null && from == null) {
+            return total;
+        } else if (from == null) {
+            return byContext.get(contextId);
+        } else if (contextId == null) {
+            return byFrom.get(from);
+        }
+        Map<String, Aggregate> contextFrom = byContextFrom.get(contextId);
+        return contextFrom != null ? contextFrom.get(from) : null;
+    }
+
+    private static Aggregate getOrCreate(Map<String, Aggregate> aggregates, String key) {
+        Aggregate aggregate = aggregates.get(key);
+        if (aggregate == null) {
+            aggregate = new Aggregate();
+            aggregates.put(key, aggregate);
+        }
+        return aggregate;
+    }
+
+    private static void remove(Map<String, Aggregate> aggregates, String key, int reactionTime, int importance, float trust) {
+        Aggregate aggregate = aggregates.get(key);
+        if (aggregate != null) {
+            aggregate.remove(reactionTime, importance, trust);
+            if (aggregate.size == 0) {
+                aggregates.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Aggregate values of a group of messages.
+     * Importance values (1-5) are kept in a counting histogram, and reaction times and trust
+     * values in order statistic trees, which give the order statistics in O(log n) time.
+     */
+    private static class Aggregate {
+        int size;
+        final int[] importances = new int[MessageImportance.IMPORTANCE_VERY_HIGH + 1];
+        int importanceCount;
+        final SortedValues reactionTimes = new SortedValues();
+        final SortedValues trusts = new SortedValues();
+
+        void add(int reactionTime, int importance, float trust) {
+            size++;
+            if (importance > 0) {
+                importances[importanceBin(importance)]++;
+                importanceCount++;
+            }
+            if (reactionTime >= 0) {
+                reactionTimes.add(reactionTime);
+            }
+            if (trust >= 0.0) {
+                trusts.add(trust);
+            }
+        }
+
+        void remove(int reactionTime, int importance, float trust) {
+            size--;
+            if (importance > 0) {
+                importances[importanceBin(importance)]--;
+                importanceCount--;
+            }
+            if (reactionTime >= 0) {
+                reactionTimes.remove(reactionTime);
+            }
+            if (trust >= 0.0) {
+                trusts.remove(trust);
+            }
+        }
+
+        void clear() {
+            size = 0;
+            Arrays.fill(importances, 0);
+            importanceCount = 0;
+            reactionTimes.clear();
+            trusts.clear();
+        }
+
+        // Returns the k:th smallest importance value
+        int getImportance(int k) {
+            for (int importance = 1; importance < importances.length; importance++) {
+                k -= importances[importance];
+                if (k < 0) {
+                    return importance;
+                }
+            }
+            return MessageImportance.IMPORTANCE_VERY_HIGH;
+        }
+
+        private static int importanceBin(int importance) {
+            return Math.min(importance, MessageImportance.IMPORTANCE_VERY_HIGH);
+        }
+    }
+
+    /**
+     * Sorted multiset of values, an order statistic tree. The values are kept in a treap, whose
+     * nodes count the values in their subtrees, so that adding or removing a value and finding
+     * the k:th smallest value take O(log n) expected time. Equal values share a node.
+     * The nodes are kept in arrays, and the nodes of the removed values are reused.
+     */
+    private static class SortedValues {
+        private static final int NIL = 0; // the empty tree
+        private double[] values = new double[8];
+        private int[] counts = new int[8];  // the number of equal values in the node
+        private int[] sizes = new int[8];   // the number of values in the subtree
+        private int[] left = new int[8];
+        private int[] right = new int[8];   // or the next free node
+        private int root = NIL;
+        private int nodeCount = 1;          // the allocated nodes, including NIL
+        private int free = NIL;             // the first free node
+
+        int size() {
+            return sizes[root];
+        }
+
+        double get(int k) {
+            int node = root;
+            while (true) {
+                int leftSize = sizes[left[node]];
+                if (k < leftSize) {
+                    node = left[node];
+                } else if (k < leftSize + counts[node]) {
+                    return values[node];
+                } else {
+                    k -= leftSize + counts[node];
+                    node = right[node];
+                }
+            }
+        }
+
+        void add(double value) {
+            root = add(root, value);
+        }
+
+        void remove(double value) {
+            if (contains(value)) {
+                root = remove(root, value);
+            }
+        }
+
+        void clear() {
+            root = NIL;
+            nodeCount = 1;
+            free = NIL;
+        }
+
+        private boolean contains(double value) {
+            int node = root;
+            while (node != NIL) {
+                int c = Double.compare(value, values[node]);
+                if (c == 0) {
+                    return true;
+                }
+                node = c < 0 ? left[node] : right[node];
+            }
+            return false;
+        }
+
+        private int add(int node, double value) {
+            if (node == NIL) {
+                return newNode(value);
+            }
+            sizes[node]++;
+            int c = Double.compare(value, values[node]);
+            if (c == 0) {
+                counts[node]++;
+            } else if (c < 0) {
+                // the child is assigned after the call, which may grow the arrays
+                int child = add(left[node], value);
+                left[node] = child;
+                if (priority(child) > priority(node)) {
+                    node = rotateRight(node);
+                }
+            } else {
+                int child = add(right[node], value);
+                right[node] = child;
+                if (priority(child) > priority(node)) {
+                    node = rotateLeft(node);
+                }
+            }
+            return node;
+        }
+
+        // Removes a value, which is in the subtree
+        private int remove(int node, double value) {
+            sizes[node]--;
+            int c = Double.compare(value, values[node]);
+            if (c < 0) {
+                left[node] = remove(left[node], value);
+            } else if (c > 0) {
+                right[node] = remove(right[node], value);
+            } else if (--counts[node] == 0) {
+                int merged = merge(left[node], right[node]);
+                right[node] = free;
+                free = node;
+                return merged;
+            }
+            return node;
+        }
+
+        // Merges two subtrees, whose values are a < b
+        private int merge(int a, int b) {
+            if (a == NIL) {
+                return b;
+            } else if (b == NIL) {
+                return a;
+            } else if (priority(a) > priority(b)) {
+                right[a] = merge(right[a], b);
+                updateSize(a);
+                return a;
+            }
+            left[b] = merge(a, left[b]);
+            updateSize(b);
+            return b;
+        }
+
+        private int rotateRight(int node) {
+            int top = left[node];
+            left[node] = right[top];
+            right[top] = node;
+            updateSize(node);
+            updateSize(top);
+            return top;
+        }
+
+        private int rotateLeft(int node) {
+            int top = right[node];
+            right[node] = left[top];
+            left[top] = node;
+            updateSize(node);
+            updateSize(top);
+            return top;
+        }
+
+        private void updateSize(int node) {
+            sizes[node] = sizes[left[node]] + counts[node] + sizes[right[node]];
+        }
+
+        private int newNode(double value) {
+            int node = free;
+            if (node != NIL) {
+                free = right[node];
+            } else {
+                if (nodeCount == values.length) {
+                    int capacity = 2*nodeCount;
+                    values = Arrays.copyOf(values, capacity);
+                    counts = Arrays.copyOf(counts, capacity);
+                    sizes = Arrays.copyOf(sizes, capacity);
+                    left = Arrays.copyOf(left, capacity);
+                    right = Arrays.copyOf(right, capacity);
+                }
+                node = nodeCount++;
+            }
+            values[node] = value;
+            counts[node] = 1;
+            sizes[node] = 1;
+            left[node] = NIL;
+            right[node] = NIL;
+            return node;
+        }
+
+        // A pseudo-random priority of a node, which does not depend on its value
+        private static int priority(int node) {
+            int h = node*0x9E3779B9;
+            h ^= h >>> 15;
+            h *= 0x85EBCA6B;
+            return h ^ (h >>> 13);
+        }
+    }
+}
@@ -3,10 +3,15 @@ package eu.h2020.helios_social.core.info_control;
 import android.content.Context;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * MessageContextRepository class provides the access to the MessageContextDatabase, and
@@ -15,9 +20,28 @@ import java.util.List;
 public class MessageContextRepository {
 
     private final MessageContextDao mMessageContextDao;
-    private final List<MessageContext> mMessageContexts;
+    private final MessageHistory mHistory; // the newest maxSize messages
+    private final MessageContextIndex mIndex; // aggregates of mHistory
+    private final MessageHistory.RowListener mRemovedListener; // removes the evicted and deleted rows from mIndex
+    private List<MessageContext> mEarlyInserts; // messages inserted before the history was loaded
+    private boolean mDeletedDuringLoad;
+    private Set<Integer> mDeletedIds; // ids of the messages deleted before the load reached them
+    private final Map<Integer, MessageContext> mUnwritten; // inserted messages by their client-side keys until their ids are known
+    private int mLastKey; // the client-side key of the last inserted message
+    private List<MessageListener> mHistoryListeners; // receive the messages as they are loaded, null after the load
+    private int mStreamedId; // the id of the last message passed to the history listeners by the load
+    private final CompletableFuture<Void> mLoaded;
+    private volatile int mLoadedMaxId; // the newest message id when the history was loaded
+    private final ReactionTimeSketches mReactionTimeSketches; // reaction time quantiles of all inserted messages, saved in the database
+    private final MessageContextWriter mWriter; // write-behind queue of the database writes
     private final int maxSize; // max number of messages
 
+    // write-behind parameters: flush every FLUSH_BATCH_SIZE operations or after FLUSH_DELAY milliseconds
+    private static final int FLUSH_BATCH_SIZE = 64;
+    private static final long FLUSH_DELAY = 500;
+    private static final int MAX_PENDING_WRITES = 1024;
+    private static final int LOAD_PAGE_SIZE = 100;
+
     /**
      * Creates a MessageContextRepository
      * @param appContext
@@ -27,46 +51,275 @@ public class MessageContextRepository {
     }
 
     public MessageContextRepository(Context appContext, int maxSize) {
+        this(appContext, maxSize, 0.01);
+    }
+
+    /**
+     * Creates a MessageContextRepository
+     * @param appContext the application context
+     * @param maxSize the maximum number of messages in the history
+     * @param quantileError the approximate rank error of the reaction time quantiles, e.g. 0.01
+     */
+    public MessageContextRepository(Context appContext, int maxSize, double quantileError) {
         MessageContextDatabase db = MessageContextDatabase.getDatabase(appContext);
         this.mMessageContextDao = db.messageContextDao();
         this.maxSize = maxSize;
-        this.mMessageContexts = Collections.synchronizedList(new ArrayList<MessageContext>());
-
-        MessageContextDatabase.databaseWriteExecutor.execute(() -> {
-            List<MessageContext> messageContexts = mMessageContextDao.getMessages();
-            mMessageContexts.addAll(messageContexts);
-            if(mMessageContexts.size() > maxSize) {
-                mMessageContexts.subList(maxSize, mMessageContexts.size()).clear();
-                mMessageContextDao.shrinkDb(maxSize);
+        this.mHistory = new MessageHistory(maxSize);
+        this.mIndex = new MessageContextIndex();
+        this.mRemovedListener = (history, i) -> mIndex.remove(history.getContextId(i), history.getFrom(i),
+                history.getReactionTime(i), history.getImportance(i), history.getTrust(i));
+        this.mEarlyInserts = new ArrayList<>();
+        this.mDeletedIds = new HashSet<>();
+        this.mUnwritten = new HashMap<>();
+        this.mHistoryListeners = new ArrayList<>();
+        this.mReactionTimeSketches = new ReactionTimeSketches(quantileError);
+        this.mWriter = new MessageContextWriter(db, maxSize, FLUSH_BATCH_SIZE, FLUSH_DELAY, MAX_PENDING_WRITES,
+                this::onInserted, mReactionTimeSketches);
+
+        this.mLoaded = new CompletableFuture<>();
+
+        MessageContextDatabase.databaseWriteExecutor.execute(this::loadHistory);
+    }
+
+    /**
+     * Receives messages streamed from the database
+     */
+    public interface MessageListener {
+        void onMessage(MessageContext messageContext);
+    }
+
+    /**
+     * Returns a future, which completes when the message history has been loaded from the database.
+     * Until then, the history and its statistics include only the messages loaded so far.
+     * @return the future
+     */
+    public CompletableFuture<Void> whenLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Waits until the message history has been loaded from the database
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout
+     * @return true if the history was loaded, false if the waiting time elapsed
+     */
+    public boolean awaitLoaded(long timeout, TimeUnit unit) {
+        try {
+            mLoaded.get(timeout, unit);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+        }
+        return false;
+    }
+
+    /**
+     * Streams the messages of the loaded history, including message topics and texts, to the listener.
+     * The listener is called in a database thread. While the history is being loaded, the listener
+     * receives the messages as they are read by the load, so the messages are read from the database
+     * only once. The messages, which were loaded before the listener was added, are read again
+     * from the database. Messages inserted into this repository are not included.
+     * @param listener the listener
+     * @return a future, which completes when all the messages have been streamed
+     */
+    public CompletableFuture<Void> streamHistory(MessageListener listener) {
+        int streamedId;
+        synchronized (mHistory) {
+            if (mHistoryListeners != null) {
+                mHistoryListeners.add(listener);
+                streamedId = mStreamedId;
+            } else {
+                streamedId = -1;
             }
-        });
+        }
+        if (streamedId == 0) {
+            return mLoaded;
+        }
+        // read the messages, which the listener has missed, after the load
+        return mLoaded.thenRunAsync(() -> {
+            int maxId = mLoadedMaxId;
+            streamMessages(maxId, streamedId > 0 ? streamedId : maxId, listener);
+        }, MessageContextDatabase.databaseWriteExecutor);
+    }
+
+    // Loads the newest maxSize messages from the database into the history
+    private void loadHistory() {
+        try {
+            mMessageContextDao.shrinkDb(maxSize);
+            // the queued messages are written only after the newest id is known, and they get
+            // greater ids, so the load reads only the messages, which were in the database before
+            int maxId = mMessageContextDao.getMaxId();
+            List<ReactionTimeSketchEntity> sketches = mMessageContextDao.getSketches();
+            synchronized (mHistory) {
+                // the sketches have been cleared, if all the messages were deleted during the load
+                if (!mDeletedDuringLoad) {
+                    mReactionTimeSketches.restore(sketches);
+                }
+            }
+            // without saved sketches, e.g. after an upgrade, the sketches are built from the loaded messages
+            boolean restored = !sketches.isEmpty();
+            mLoadedMaxId = maxId;
+            mWriter.start();
+            int size = streamMessages(maxId, maxId, messageContext -> {
+                synchronized (mHistory) {
+                    // skip the messages deleted before the load reached them
+                    if (!mDeletedDuringLoad && !mDeletedIds.contains(messageContext.id)) {
+                        append(messageContext);
+                        if (!restored) {
+                            mReactionTimeSketches.add(messageContext);
+                        }
+                        for (MessageListener listener : mHistoryListeners) {
+                            listener.onMessage(messageContext);
+                        }
+                    }
+                    mStreamedId = messageContext.id;
+                }
+            });
+            mWriter.addDbSize(size);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            // the queued messages are written also if the load failed
+            mWriter.start();
+            synchronized (mHistory) {
+                // messages inserted before the load completed are newer than the loaded messages
+                for (MessageContext messageContext : mEarlyInserts) {
+                    append(messageContext);
+                }
+                mEarlyInserts = null;
+                mDeletedIds = null;
+                mHistoryListeners = null;
+            }
+            mLoaded.complete(null);
+        }
+    }
+
+    // Reads the newest maxSize messages having id <= maxId, up to the message lastId, with a paged query
+    private int streamMessages(int maxId, int lastId, MessageListener listener) {
+        int afterId = mMessageContextDao.getFirstIdOfNewest(maxId, maxSize) - 1;
+        int size = 0;
+        List<MessageContext> page;
+        do {
+            page = mMessageContextDao.getMessagesAfter(afterId, lastId, LOAD_PAGE_SIZE);
+            for (MessageContext messageContext : page) {
+                listener.onMessage(messageContext);
+                afterId = messageContext.id;
+                size++;
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        return size;
     }
 
+    /**
+     * Returns the in-memory message history, from the oldest to the newest message.
+     * The messages do not include topics and texts, which are read from the database by loadMessages().
+     * @return a copy of the message history
+     */
     public List<MessageContext> getMessages() {
-        return mMessageContexts;
+        synchronized (mHistory) {
+            List<MessageContext> messageContexts = mHistory.toList();
+            for (int i = 0; i < messageContexts.size(); i++) {
+                // the messages, whose ids are not known yet, are returned as inserted
+                int key = messageContexts.get(i).key;
+                if (key != 0 && mUnwritten.containsKey(key)) {
+                    messageContexts.set(i, mUnwritten.get(key));
+                }
+            }
+            return messageContexts;
+        }
+    }
+
+    /**
+     * Reads the newest messages, including message topics and texts, from the database.
+     * This method should not be called in the main thread.
+     * @return the list of messages, from the oldest to the newest message
+     */
+    public List<MessageContext> loadMessages() {
+        mWriter.flush();
+        return mMessageContextDao.getNewestMessages(maxSize);
     }
 
     public void insert(MessageContext messageContext) {
-        mMessageContexts.add(messageContext);
-        MessageContextDatabase.databaseWriteExecutor.execute(() -> {
-            mMessageContextDao.insert(messageContext);
-            if(mMessageContexts.size() > 1.1*maxSize) {
-                mMessageContexts.subList(maxSize, mMessageContexts.size()).clear();
-                mMessageContextDao.shrinkDb(maxSize);
+        synchronized (mHistory) {
+            if (messageContext.id == 0) {
+                // the message is identified by a client-side key until the database id is known
+                messageContext.key = --mLastKey;
+                mUnwritten.put(messageContext.key, messageContext);
             }
-        });
+            if (mEarlyInserts != null) {
+                // the history is appended after the load has completed
+                mEarlyInserts.add(messageContext);
+            } else {
+                append(messageContext);
+            }
+            mReactionTimeSketches.add(messageContext);
+        }
+        mWriter.insert(messageContext);
     }
 
     public void delete(MessageContext messageContext) {
-        mMessageContexts.remove(messageContext);
-        MessageContextDatabase.databaseWriteExecutor.execute(() -> {
-            mMessageContextDao.delete(messageContext);
-        });
+        synchronized (mHistory) {
+            int id = messageContext.id;
+            if (id != 0) {
+                if (mHistory.remove(id, mRemovedListener) < 0 && mDeletedIds != null) {
+                    mDeletedIds.add(id);
+                }
+            } else if (messageContext.key != 0) {
+                mHistory.remove(messageContext.key, mRemovedListener);
+                mUnwritten.remove(messageContext.key);
+            }
+            if (mEarlyInserts != null) {
+                mEarlyInserts.removeIf(earlyInsert -> earlyInsert == messageContext ||
+                        (id != 0 ? earlyInsert.id == id : earlyInsert.key == messageContext.key));
+            }
+        }
+        mWriter.delete(messageContext);
     }
 
     public void deleteAll() {
-        mMessageContexts.clear();
-        MessageContextDatabase.databaseWriteExecutor.execute(mMessageContextDao::deleteAll);
+        synchronized (mHistory) {
+            if (mEarlyInserts != null) {
+                mEarlyInserts.clear();
+                mDeletedDuringLoad = true;
+            }
+            mHistory.clear();
+            mUnwritten.clear();
+            mIndex.clear();
+            mReactionTimeSketches.clear();
+        }
+        mWriter.deleteAll();
+    }
+
+    /**
+     * Writes the pending inserts and deletes into the database, and waits until they are written.
+     * This method should not be called in the main thread.
+     * @return true if the inserts and deletes have been written, false if some of them could not be
+     * written into the database and were lost
+     */
+    public boolean flush() {
+        return mWriter.flush();
+    }
+
+    // Publishes the database ids of the written messages. Called in the writer thread.
+    private void onInserted(List<MessageContext> messageContexts, long[] ids) {
+        synchronized (mHistory) {
+            for (int i = 0; i < messageContexts.size(); i++) {
+                MessageContext messageContext = messageContexts.get(i);
+                messageContext.id = (int) ids[i];
+                if (messageContext.key != 0) {
+                    mUnwritten.remove(messageContext.key);
+                    mHistory.replaceId(messageContext.key, messageContext.id);
+                    messageContext.key = 0;
+                }
+            }
+        }
+    }
+
+    // Appends a message into the history, and evicts the oldest message if the history is full
+    private void append(MessageContext messageContext) {
+        mHistory.append(messageContext, mRemovedListener);
+        mIndex.add(messageContext);
     }
 
     public List<MessageContext> getMessagesByContextFrom(String contextId, String from) {
@@ -82,101 +335,33 @@ public class MessageContextRepository {
     }
 
     public int getSize(String contextId, String from) {
-        int size = 0;
-        for (MessageContext messageContext : mMessageContexts) {
-            if ((contextId == null || contextId.equals(messageContext.getContextID())) &&
-                    (from == null || from.equals(messageContext.getFrom()))) {
-                size++;
-            }
-        }
-        return size;
+        return mIndex.getSize(contextId, from);
     }
 
     public int getMedianReactionTime(String contextId, String from) {
-        List<MessageContext> messageContexts = new ArrayList<MessageContext>();
-        for (MessageContext messageContext : mMessageContexts) {
-            if ((contextId == null || contextId.equals(messageContext.getContextID())) &&
-                    (from == null || from.equals(messageContext.getFrom()))) {
-                if (messageContext.getReactionTime() >= 0) {
-                    messageContexts.add(messageContext);
-                }
-            }
-        }
-        if(messageContexts.size() > 0) {
-            MessageContext[] messageContextArray = messageContexts.toArray(new MessageContext[0]);
-            Arrays.sort(messageContextArray, new Comparator<MessageContext>() {
-                @Override
-                public int compare(MessageContext o1, MessageContext o2) {
-                    return o1.getReactionTime() - o2.getReactionTime();
-                }
-            });
-            int median;
-            if (messageContextArray.length % 2 == 0)
-                median = (messageContextArray[messageContextArray.length/2].getReactionTime() +
-                        messageContextArray[messageContextArray.length/2 - 1].getReactionTime())/2;
-            else
-                median = messageContextArray[messageContextArray.length/2].getReactionTime();
-            return median;
-        }
-        return -1;
+        return mIndex.getMedianReactionTime(contextId, from);
+    }
+
+    /**
+     * Returns an approximate quantile of the reaction times, e.g. 0.9 for the 90th percentile.
+     * The quantiles are estimated from all the messages inserted into the database, including
+     * the messages that have already been dropped from the history, and they are kept over restarts.
+     * Deleted messages are not removed from the quantiles, except by deleteAll().
+     * @param contextId the context id, or null for any context
+     * @param from the sender, or null for any sender
+     * @param quantile the quantile in range [0.0, 1.0]
+     * @return the reaction time quantile, or -1 if there are no messages with reaction time
+     */
+    public int getReactionTimeQuantile(String contextId, String from, double quantile) {
+        return mReactionTimeSketches.getQuantile(contextId, from, quantile);
     }
 
     public int getMedianImportance(String contextId, String from) {
-        List<MessageContext> messageContexts = new ArrayList<MessageContext>();
-        for (MessageContext messageContext : mMessageContexts) {
-            if ((contextId == null || contextId.equals(messageContext.getContextID())) &&
-                    (from == null || from.equals(messageContext.getFrom()))) {
-                if (messageContext.getImportance() > 0) {
-                    messageContexts.add(messageContext);
-                }
-            }
-        }
-        if(messageContexts.size() > 0) {
-            MessageContext[] messageContextArray = messageContexts.toArray(new MessageContext[0]);
-            Arrays.sort(messageContextArray, new Comparator<MessageContext>() {
-                @Override
-                public int compare(MessageContext o1, MessageContext o2) {
-                    return o1.getImportance() - o2.getImportance();
-                }
-            });
-            int median;
-            if (messageContextArray.length % 2 == 0)
-                median = (messageContextArray[messageContextArray.length/2].getImportance() +
-                        messageContextArray[messageContextArray.length/2 - 1].getImportance())/2;
-            else
-                median = messageContextArray[messageContextArray.length/2].getImportance();
-            return median;
-        }
-        return -1;
+        return mIndex.getMedianImportance(contextId, from);
     }
 
     public double getMedianTrust(String contextId, String from) {
-        List<MessageContext> messageContexts = new ArrayList<MessageContext>();
-        for (MessageContext messageContext : mMessageContexts) {
-            if ((contextId == null || contextId.equals(messageContext.getContextID())) &&
-                    (from == null || from.equals(messageContext.getFrom()))) {
-                if (messageContext.getTrust() >= 0.0) {
-                    messageContexts.add(messageContext);
-                }
-            }
-        }
-        if(messageContexts.size() > 0) {
-            MessageContext[] messageContextArray = messageContexts.toArray(new MessageContext[0]);
-            Arrays.sort(messageContextArray, new Comparator<MessageContext>() {
-                @Override
-                public int compare(MessageContext o1, MessageContext o2) {
-                    return Float.compare(o1.getTrust(), o2.getTrust());
-                }
-            });
-            double median;
-            if (messageContextArray.length % 2 == 0)
-                median = (messageContextArray[messageContextArray.length/2].getTrust() +
-                        messageContextArray[messageContextArray.length/2 - 1].getTrust())/2;
-            else
-                median = messageContextArray[messageContextArray.length/2].getTrust();
-            return median;
-        }
-        return -1.0;
+        return mIndex.getMedianTrust(contextId, from);
     }
-    
+
 }
\ No newline at end of file
@@ -0,0 +1,321 @@
+package eu.h2020.helios_social.core.info_control;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MessageContextWriter is a write-behind queue for the MessageContextDatabase.
+ * Inserts and deletes are queued, and written into the database in one transaction
+ * when batchSize operations are pending or flushDelay milliseconds have passed since the first
+ * pending operation. The writes are executed in order on a single thread.
+ * The database ids of the inserted messages are passed to the insert listener after the transaction
+ * has been committed. The changed reaction time sketches are saved in the same transaction.
+ * The queue is bounded: when maxPending operations are pending, the writing thread waits
+ * until the queue is flushed. Nothing is written until the writer has been started, so that
+ * the history can be read from the database before the queued messages are written. Until then,
+ * the operations are buffered without waiting, so that the callers are not blocked by the load.
+ * A batch, which fails to be written, is queued again and retried up to MAX_ATTEMPTS times. If it still
+ * fails, its operations are lost, and the next flush() returns false.
+ */
+class MessageContextWriter {
+
+    private static final int INSERT = 0;
+    private static final int DELETE = 1;
+    private static final int DELETE_ALL = 2;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final MessageContextDatabase db;
+    private final MessageContextDao dao;
+    private final ScheduledExecutorService executor;
+    private final int maxSize;      // max number of messages in the database
+    private final int batchSize;
+    private final long flushDelay;
+    private final int maxPending;
+    private final AtomicInteger dbSize; // approximate number of messages in the database
+    private final InsertListener insertListener;
+    private final ReactionTimeSketches sketches;
+    private List<ReactionTimeSketchEntity> savedSketches; // the sketches saved by the current transaction
+    private final ArrayList<MessageContext> written; // the messages inserted by the current transaction
+    private long[] writtenIds;
+    private int sizeChange; // the change of dbSize by the current transaction
+
+    private ArrayList<Operation> pending;
+    private ArrayList<Operation> flushing;
+    private boolean flushScheduled;
+    private boolean started;
+    private int failedAttempts; // the failed attempts to write the first pending operations
+    private int lostCount;      // the number of operations lost since the previous flush()
+
+    /**
+     * Creates a MessageContextWriter
+     * @param db the database
+     * @param maxSize the maximum number of messages kept in the database
+     * @param batchSize the number of pending operations, which triggers the flush
+     * @param flushDelay the maximum delay of pending operations in milliseconds
+     * @param maxPending the maximum number of pending operations
+     * @param insertListener receives the database ids of the inserted messages
+     * @param sketches the reaction time sketches, which are saved with the inserted messages
+     */
+    MessageContextWriter(MessageContextDatabase db, int maxSize, int batchSize, long flushDelay, int maxPending,
+                         InsertListener insertListener, ReactionTimeSketches sketches) {
+        this.db = db;
+        this.dao = db.messageContextDao();
+        this.executor = MessageContextDatabase.databaseWriteScheduler;
+        this.maxSize = maxSize;
+        this.batchSize = batchSize;
+        this.flushDelay = flushDelay;
+        this.maxPending = Math.max(maxPending, batchSize);
+        this.dbSize = new AtomicInteger();
+        this.insertListener = insertListener;
+        this.sketches = sketches;
+        this.written = new ArrayList<>();
+        this.writtenIds = new long[batchSize];
+        this.pending = new ArrayList<>();
+        this.flushing = new ArrayList<>();
+        this.flushScheduled = false;
+        this.started = false;
+    }
+
+    /**
+     * Receives the database ids of the inserted messages. Called in the writer thread.
+     */
+    interface InsertListener {
+        /**
+         * Called when messages have been inserted into the database
+         * @param messageContexts the inserted messages
+         * @param ids the database ids, ids[i] is the id of the message i
+         */
+        void onInserted(List<MessageContext> messageContexts, long[] ids);
+    }
+
+    private static class Operation {
+        final int type;
+        final MessageContext messageContext;
+
+        Operation(int type, MessageContext messageContext) {
+            this.type = type;
+            this.messageContext = messageContext;
+        }
+    }
+
+    /**
+     * Queues a message to be inserted into the database. The database id of the message is passed
+     * to the insert listener when the message has been written.
+     * @param messageContext the MessageContext
+     */
+    void insert(MessageContext messageContext) {
+        enqueue(new Operation(INSERT, messageContext));
+    }
+
+    /**
+     * Queues a message to be deleted from the database. A message, which has been queued
+     * for insert but whose id is not yet known, is deleted when it has been inserted.
+     * @param messageContext the MessageContext
+     */
+    void delete(MessageContext messageContext) {
+        enqueue(new Operation(DELETE, messageContext));
+    }
+
+    /**
+     * Queues deletion of all messages from the database
+     */
+    void deleteAll() {
+        enqueue(new Operation(DELETE_ALL, null));
+    }
+
+    /**
+     * Adds to the number of messages in the database, e.g. after the messages are loaded
+     * @param size the number of messages
+     */
+    void addDbSize(int size) {
+        dbSize.addAndGet(size);
+    }
+
+    /**
+     * Starts writing the queued operations into the database. Calling this again has no effect.
+     */
+    void start() {
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            started = true;
+            notifyAll();
+        }
+        executor.execute(this::flushPending);
+    }
+
+    /**
+     * Writes all the pending operations into the database, and waits until they are written.
+     * A failed batch is retried without delay. If the writer has not been started yet, waits until
+     * it is started. This method should not be called in the main thread.
+     * @return true if all the operations queued since the previous flush have been written,
+     * false if some of them were lost, because they could not be written
+     */
+    boolean flush() {
+        try {
+            synchronized (this) {
+                while (!started) {
+                    wait();
+                }
+            }
+            boolean retry;
+            do {
+                executor.submit(this::flushPending).get();
+                synchronized (this) {
+                    retry = failedAttempts > 0;
+                }
+            } while (retry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            boolean written = lostCount == 0;
+            lostCount = 0;
+            return written;
+        }
+    }
+
+    private void enqueue(Operation operation) {
+        synchronized (this) {
+            while (started && pending.size() >= maxPending) {
+                executor.execute(this::flushPending);
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            pending.add(operation);
+            if (!started) {
+                return; // written when started
+            }
+            if (pending.size() == batchSize) {
+                executor.execute(this::flushPending);
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::flushPending, flushDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Writes the pending operations in one transaction. Executed in the executor thread.
+    private void flushPending() {
+        ArrayList<Operation> operations;
+        synchronized (this) {
+            flushScheduled = false;
+            if (!started || pending.isEmpty()) {
+                return;
+            }
+            operations = pending;
+            pending = flushing;
+            flushing = operations;
+            notifyAll();
+        }
+        try {
+            written.clear();
+            sizeChange = 0;
+            savedSketches = null;
+            db.runInTransaction(() -> write(operations));
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (savedSketches != null) {
+                sketches.setDirty(savedSketches);
+            }
+            synchronized (this) {
+                if (++failedAttempts < MAX_ATTEMPTS) {
+                    // queue the failed operations again before the operations queued after them
+                    operations.addAll(pending);
+                    pending.clear();
+                    flushing = pending;
+                    pending = operations;
+                    if (!flushScheduled) {
+                        flushScheduled = true;
+                        executor.schedule(this::flushPending, flushDelay, TimeUnit.MILLISECONDS);
+                    }
+                    return;
+                }
+                failedAttempts = 0;
+                lostCount += operations.size();
+            }
+            operations.clear();
+            return;
+        }
+        synchronized (this) {
+            failedAttempts = 0;
+        }
+        dbSize.addAndGet(sizeChange);
+        if (!written.isEmpty()) {
+            insertListener.onInserted(written, writtenIds);
+        }
+        operations.clear();
+    }
+
+    private void write(List<Operation> operations) {
+        List<MessageContext> inserts = new ArrayList<>();
+        for (Operation operation : operations) {
+            if (operation.type == INSERT) {
+                inserts.add(operation.messageContext);
+                continue;
+            }
+            writeInserts(inserts);
+            if (operation.type == DELETE) {
+                int id = operation.messageContext.id;
+                if (id == 0) {
+                    // inserted by this transaction, and the id is not yet published
+                    id = getWrittenId(operation.messageContext);
+                }
+                if (id != 0) {
+                    dao.deleteById(id);
+                    sizeChange--;
+                }
+            } else if (operation.type == DELETE_ALL) {
+                dao.deleteAll();
+                dao.deleteSketches();
+                sizeChange = -dbSize.get();
+            }
+        }
+        writeInserts(inserts);
+        savedSketches = sketches.takeDirty();
+        if (!savedSketches.isEmpty()) {
+            dao.putSketches(savedSketches);
+        }
+        // the database keeps the newest messages, like the in-memory history
+        if (dbSize.get() + sizeChange > 1.1*maxSize) {
+            dao.shrinkDb(maxSize);
+            sizeChange = maxSize - dbSize.get();
+        }
+    }
+
+    private void writeInserts(List<MessageContext> inserts) {
+        if (!inserts.isEmpty()) {
+            long[] ids = dao.insertAll(inserts);
+            int n = written.size();
+            if (n + ids.length > writtenIds.length) {
+                writtenIds = Arrays.copyOf(writtenIds, Math.max(2*writtenIds.length, n + ids.length));
+            }
+            System.arraycopy(ids, 0, writtenIds, n, ids.length);
+            written.addAll(inserts);
+            sizeChange += ids.length;
+            inserts.clear();
+        }
+    }
+
+    // Returns the id of a message inserted by the current transaction, or 0
+    private int getWrittenId(MessageContext messageContext) {
+        for (int i = written.size() - 1; i >= 0; i--) {
+            if (written.get(i) == messageContext) {
+                return (int) writtenIds[i];
+            }
+        }
+        return 0;
+    }
+}
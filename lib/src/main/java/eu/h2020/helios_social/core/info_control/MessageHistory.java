@@ -0,0 +1,268 @@
+package eu.h2020.helios_social.core.info_control;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MessageHistory is the in-memory message history of MessageContextRepository.
+ * It is a fixed-capacity ring buffer, which keeps the newest messages in columnar form:
+ * database ids, timestamps, reaction times, importances and trust values are kept in parallel primitive
+ * arrays, and context ids and senders are dictionary-encoded as integers. A row costs 29 bytes plus
+ * its share of the dictionary. Message topics and texts are not kept: the classifier is trained
+ * with the messages as they are loaded and inserted, and the texts are read from the database when needed.
+ * Rows are indexed from the oldest (0) to the newest (size-1). Appending to a full history evicts
+ * the oldest row in constant time. This class is not thread-safe.
+ */
+class MessageHistory {
+
+    private final int capacity;
+    private final int[] ids;           // database ids, or negative client-side keys until the ids are known
+    private final long[] timestamps;
+    private final int[] reactionTimes;
+    private final byte[] importances;
+    private final float[] trusts;
+    private final int[] contextCodes;
+    private final int[] senderCodes;   // -1 if the sender is null
+    private final Dictionary dictionary;
+    private int head; // index of the oldest row
+    private int size;
+
+    /**
+     * Creates a MessageHistory
+     * @param capacity the maximum number of messages
+     */
+    MessageHistory(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        this.ids = new int[this.capacity];
+        this.timestamps = new long[this.capacity];
+        this.reactionTimes = new int[this.capacity];
+        this.importances = new byte[this.capacity];
+        this.trusts = new float[this.capacity];
+        this.contextCodes = new int[this.capacity];
+        this.senderCodes = new int[this.capacity];
+        this.dictionary = new Dictionary();
+        this.head = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of messages
+     * @return the size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Appends a message as the newest row of the history.
+     * If the history is full, the oldest row is evicted, and passed to the evicted listener.
+     * The row is identified by the id of the message, or by its client-side key if the id is not known.
+     * @param messageContext the message
+     * @param evictedListener receives the evicted row (or null)
+     */
+    void append(MessageContext messageContext, RowListener evictedListener) {
+        int row = (head + size) % capacity;
+        if (size == capacity) {
+            if (evictedListener != null) {
+                evictedListener.onRow(this, 0);
+            }
+            release(row);
+            head = (head + 1) % capacity;
+        } else {
+            size++;
+        }
+        ids[row] = messageContext.id != 0 ? messageContext.id : messageContext.key;
+        timestamps[row] = messageContext.getTimestamp();
+        reactionTimes[row] = messageContext.getReactionTime();
+        importances[row] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, messageContext.getImportance()));
+        trusts[row] = messageContext.getTrust();
+        contextCodes[row] = dictionary.acquire(messageContext.getContextID());
+        senderCodes[row] = messageContext.getFrom() != null ? dictionary.acquire(messageContext.getFrom()) : -1;
+    }
+
+    /**
+     * Removes the row, which has the given database id
+     * @param id the database id of the message
+     * @param removedListener receives the row before it is removed (or null)
+     * @return the index of the removed row before removal, or -1 if no row was found
+     */
+    int remove(int id, RowListener removedListener) {
+        for (int i = size - 1; i >= 0; i--) {
+            int row = (head + i) % capacity;
+            if (ids[row] == id) {
+                if (removedListener != null) {
+                    removedListener.onRow(this, i);
+                }
+                release(row);
+                // shift the newer rows towards the head
+                for (int j = i; j < size - 1; j++) {
+                    move((head + j + 1) % capacity, (head + j) % capacity);
+                }
+                size--;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes all the rows
+     */
+    void clear() {
+        dictionary.clear();
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Replaces the id of a row, e.g. when a client-side key is replaced by the database id.
+     * The rows are searched from the newest, because the replaced rows are usually recent.
+     * @param id the current id of the row
+     * @param newId the new id
+     * @return true if the row was found
+     */
+    boolean replaceId(int id, int newId) {
+        for (int i = size - 1; i >= 0; i--) {
+            int row = (head + i) % capacity;
+            if (ids[row] == id) {
+                ids[row] = newId;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int getId(int i) {
+        return ids[(head + i) % capacity];
+    }
+
+    long getTimestamp(int i) {
+        return timestamps[(head + i) % capacity];
+    }
+
+    int getReactionTime(int i) {
+        return reactionTimes[(head + i) % capacity];
+    }
+
+    int getImportance(int i) {
+        return importances[(head + i) % capacity];
+    }
+
+    float getTrust(int i) {
+        return trusts[(head + i) % capacity];
+    }
+
+    String getContextId(int i) {
+        return dictionary.getString(contextCodes[(head + i) % capacity]);
+    }
+
+    String getFrom(int i) {
+        int code = senderCodes[(head + i) % capacity];
+        return code >= 0 ? dictionary.getString(code) : null;
+    }
+
+    /**
+     * Returns the rows as MessageContexts without topics and texts, from the oldest to the newest.
+     * @return the list of messages
+     */
+    List<MessageContext> toList() {
+        List<MessageContext> messageContexts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int row = (head + i) % capacity;
+            MessageContext messageContext = new MessageContext(getContextId(i), getFrom(i), timestamps[row],
+                    reactionTimes[row], importances[row], trusts[row], null, null);
+            if (ids[row] > 0) {
+                messageContext.id = ids[row];
+            } else {
+                messageContext.key = ids[row];
+            }
+            messageContexts.add(messageContext);
+        }
+        return messageContexts;
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        timestamps[to] = timestamps[from];
+        reactionTimes[to] = reactionTimes[from];
+        importances[to] = importances[from];
+        trusts[to] = trusts[from];
+        contextCodes[to] = contextCodes[from];
+        senderCodes[to] = senderCodes[from];
+    }
+
+    // Releases the dictionary codes of a row
+    private void release(int row) {
+        dictionary.release(contextCodes[row]);
+        if (senderCodes[row] >= 0) {
+            dictionary.release(senderCodes[row]);
+        }
+    }
+
+    /**
+     * Receives a row of the history
+     */
+    interface RowListener {
+        void onRow(MessageHistory history, int i);
+    }
+
+    /**
+     * Reference-counted dictionary of strings. A code is reused after all its references are released.
+     */
+    private static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] strings = new String[16];
+        private int[] references = new int[16];
+        private int[] freeCodes = new int[16];
+        private int freeCount = 0;
+        private int nextCode = 0;
+
+        int acquire(String string) {
+            Integer code = codes.get(string);
+            if (code == null) {
+                if (freeCount > 0) {
+                    code = freeCodes[--freeCount];
+                } else {
+                    code = nextCode++;
+                    if (code == strings.length) {
+                        strings = Arrays.copyOf(strings, 2*code);
+                        references = Arrays.copyOf(references, 2*code);
+                        freeCodes = Arrays.copyOf(freeCodes, 2*code);
+                    }
+                }
+                codes.put(string, code);
+                strings[code] = string;
+            }
+            references[code]++;
+            return code;
+        }
+
+        void release(int code) {
+            if (--references[code] == 0) {
+                codes.remove(strings[code]);
+                strings[code] = null;
+                freeCodes[freeCount++] = code;
+            }
+        }
+
+        int getCode(String string) {
+            Integer code = codes.get(string);
+            return code != null ? code : -1;
+        }
+
+        String getString(int code) {
+            return strings[code];
+        }
+
+        void clear() {
+            codes.clear();
+            Arrays.fill(strings, null);
+            Arrays.fill(references, 0);
+            freeCount = 0;
+            nextCode = 0;
+        }
+    }
+}
@@ -1,16 +1,27 @@
 package eu.h2020.helios_social.core.info_control;
 
-import androidx.annotation.NonNull;
+import android.util.Log;
 
-import org.json.JSONException;
+import androidx.annotation.NonNull;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import eu.h2020.helios_social.core.context.Context;
+import eu.h2020.helios_social.core.context.ContextBatchListener;
+import eu.h2020.helios_social.core.context.ContextChange;
+import eu.h2020.helios_social.core.context.ContextTransaction;
 import eu.h2020.helios_social.core.contextualegonetwork.ContextualEgoNetwork;
 
 /**
@@ -21,58 +32,204 @@ import eu.h2020.helios_social.core.contextualegonetwork.ContextualEgoNetwork;
 public class MyContexts {   
 
     private final Map<String,Context> myContexts;
+    private final ContextRegistry registry; // the dense indexes and the active set of the contexts
     private final ContextualEgoNetwork cen;
+    private final MyContextsDatabase myContextsDb;
     private final MyContextsDao myContextsDao;
+    private final CompletableFuture<Void> loaded;
+    private final Map<String, MyContextsEntity> storedEntities; // the entities written into the database
+    private final Map<String, Context> pendingActiveStates;     // the contexts, whose active states wait to be written
+    private boolean activeStateWriteScheduled;
+    private volatile long activeStateWriteDelay = ACTIVE_STATE_WRITE_DELAY;
+    private final List<ContextBatchListener> batchListeners;
+    private final ContextBatchListener batchFilter; // forwards the changes of MyContexts to batchListeners
+    private volatile List<String> unresolvedContextIds = Collections.emptyList();
+    private final Map<String, InternedContext> internedContexts; // the interned contexts by structural key
+    private final Map<String, String> internedKeys;              // the structural keys by context id
+    private final List<MyContextsPublisher> publishers;          // the publishers with subscriptions
+
+    private static final String TAG = "HeliosMyContexts";
+
+    // the maximum time to wait for the contexts to be read from the database in the constructor
+    private static final long LOAD_TIMEOUT = 5000;
+    // the default time window, in which the active state changes are coalesced before writing them
+    private static final long ACTIVE_STATE_WRITE_DELAY = 1000;
 
     /**
-     * Creates a MyContexts instance
+     * Creates a MyContexts instance, and waits until the contexts have been read from the database
+     * (at most five seconds).
      * @param cen the contextual ego network (or null)
      * @param myContextsDb MyContextsDatabase (or null)
      */
     public MyContexts(ContextualEgoNetwork cen, MyContextsDatabase myContextsDb) {
+        this(cen, myContextsDb, true);
+    }
+
+    /**
+     * Creates a MyContexts instance
+     * @param cen the contextual ego network (or null)
+     * @param myContextsDb MyContextsDatabase (or null)
+     * @param wait if true, waits until the contexts have been read from the database (at most five seconds).
+     *             Otherwise, the method whenLoaded can be used to wait for the read completing.
+     */
+    public MyContexts(ContextualEgoNetwork cen, MyContextsDatabase myContextsDb, boolean wait) {
         this.myContexts = new ConcurrentHashMap<>();
+        this.registry = new ContextRegistry();
+        this.internedContexts = new HashMap<>();
+        this.internedKeys = new HashMap<>();
         this.cen = cen;
+        this.loaded = new CompletableFuture<>();
+        this.myContextsDb = myContextsDb;
+        this.storedEntities = new ConcurrentHashMap<>();
+        this.pendingActiveStates = new HashMap<>();
+        this.batchListeners = new CopyOnWriteArrayList<>();
+        this.batchFilter = this::forwardChanges;
+        this.publishers = new CopyOnWriteArrayList<>();
         if(myContextsDb !=null) {
             this.myContextsDao = myContextsDb.myContextsDao();
-            readContexts(true);
+            readContexts();
+            if(wait) {
+                awaitLoaded(LOAD_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
         } else {
             this.myContextsDao = null;
+            loaded.complete(null);
         }
     }
 
+    /**
+     * Returns a future, which completes when the contexts have been read from the database
+     * @return the future
+     */
+    public CompletableFuture<Void> whenLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Waits until the contexts have been read from the database
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout
+     * @return true if the contexts were read, false if the waiting time elapsed
+     */
+    public boolean awaitLoaded(long timeout, TimeUnit unit) {
+        try {
+            loaded.get(timeout, unit);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+        }
+        return false;
+    }
+
     /**
      * Read all contexts from the database
-     * @param wait if true, wait for read completing
      */
-    private void readContexts(boolean wait) {
+    private void readContexts() {
         MyContextsDatabase.databaseWriteExecutor.execute(() -> {
-            List<MyContextsEntity> myContextsEntities = myContextsDao.getContexts();
-            int prevSize = myContextsEntities.size() + 1;
-            while(myContextsEntities.size() > 0 && myContextsEntities.size() < prevSize) {
-                List<MyContextsEntity> incompleteEntities = new ArrayList<>();
-                for (MyContextsEntity contextEntity : myContextsEntities) {
-                    Context context = null;
-                    try {
-                        context = contextEntity.getContext(myContexts);
-                    } catch (Exception e) {
-                    }
-                    if (context != null) {
-                        myContexts.put(context.getId(), context);
-                    } else {
-                        incompleteEntities.add(contextEntity);
-                    }
-                }
-                prevSize = myContextsEntities.size();
-                myContextsEntities = incompleteEntities;
+            try {
+                restoreContexts();
+            } finally {
+                loaded.complete(null);
             }
+            notifyPublishers();
         });
-        if(wait) {
+    }
+
+    /**
+     * Creates the contexts read from the database. The dependency graph of the contexts (e.g. the
+     * operands of ContextAnd) is built once, and the contexts are created in topological order, so that
+     * each context is created exactly once after its dependencies. The contexts, which have
+     * a missing dependency or are part of a dependency cycle, are not created.
+     */
+    private void restoreContexts() {
+        List<MyContextsEntity> myContextsEntities = myContextsDao.getContexts();
+        int n = myContextsEntities.size();
+        Map<String, Integer> indexes = new HashMap<>(2*n);
+        for (int i = 0; i < n; i++) {
+            indexes.put(myContextsEntities.get(i).getContextId(), i);
+        }
+        boolean[] invalid = new boolean[n];
+        int[] dependencyCounts = new int[n];
+        List<List<Integer>> dependents = new ArrayList<>(n);
+        List<String> unresolved = new ArrayList<>();
+        ArrayDeque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            dependents.add(new ArrayList<>(1));
+        }
+        for (int i = 0; i < n; i++) {
+            MyContextsEntity contextEntity = myContextsEntities.get(i);
+            List<String> dependencyIds;
             try {
-                MyContextsDatabase.databaseWriteExecutor.awaitTermination(5000, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                dependencyIds = contextEntity.getDependencyIds();
+            } catch (IOException e) {
+                Log.w(TAG, "Invalid parameters of context " + contextEntity.getContextId(), e);
+                unresolved.add(contextEntity.getContextId());
+                invalid[i] = true;
+                ready.add(i);
+                continue;
+            }
+            for (String dependencyId : dependencyIds) {
+                Integer dependency = indexes.get(dependencyId);
+                if (dependency != null) {
+                    dependents.get(dependency).add(i);
+                    dependencyCounts[i]++;
+                } else if (!myContexts.containsKey(dependencyId)) {
+                    Log.w(TAG, "Context " + contextEntity.getContextId() + " refers to a missing context " + dependencyId);
+                }
+            }
+            if (dependencyCounts[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int created = 0;
+        while (!ready.isEmpty()) {
+            int i = ready.poll();
+            MyContextsEntity contextEntity = myContextsEntities.get(i);
+            if (!invalid[i]) {
+                Context context = null;
+                try {
+                    context = contextEntity.getContext(myContexts);
+                } catch (Exception e) {
+                    Log.w(TAG, "Cannot create context " + contextEntity.getContextId(), e);
+                }
+                if (context != null) {
+                    myContexts.put(context.getId(), context);
+                    registry.add(context);
+                    storedEntities.put(context.getId(), contextEntity);
+                    internRestored(context);
+                } else {
+                    Log.w(TAG, "Cannot create context " + contextEntity.getContextId() + " of type " + contextEntity.getType());
+                    unresolved.add(contextEntity.getContextId());
+                }
+            }
+            created++;
+            // the dependents are processed even if this context failed, and then fail with a missing dependency
+            for (int dependent : dependents.get(i)) {
+                if (--dependencyCounts[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (created < n) {
+            for (int i = 0; i < n; i++) {
+                if (dependencyCounts[i] > 0) {
+                    String contextId = myContextsEntities.get(i).getContextId();
+                    Log.w(TAG, "Context " + contextId + " is part of a dependency cycle");
+                    unresolved.add(contextId);
+                }
             }
         }
+        unresolvedContextIds = Collections.unmodifiableList(unresolved);
+    }
+
+    /**
+     * Returns the ids of the contexts, which were found in the database but could not be created, e.g.
+     * because they refer to a missing context or are part of a dependency cycle.
+     * @return the list of context ids
+     */
+    public List<String> getUnresolvedContextIds() {
+        return unresolvedContextIds;
     }
 
     /**
@@ -82,10 +239,14 @@ public class MyContexts {
     public void add(@NonNull Context context) {
         if(myContexts.get(context.getId()) == null) {
             myContexts.put(context.getId(), context);
+            registry.add(context);
+            notifyPublishers();
             if (myContextsDao != null) {
                 MyContextsDatabase.databaseWriteExecutor.execute(() -> {
                     try {
-                        myContextsDao.add(new MyContextsEntity(context));
+                        MyContextsEntity contextEntity = new MyContextsEntity(context);
+                        myContextsDao.add(contextEntity);
+                        storedEntities.put(context.getId(), contextEntity);
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
@@ -98,19 +259,186 @@ public class MyContexts {
     }
 
     /**
-     * Updates MyContextsDatabase with updates in given context
+     * Returns the shared instance of a context. A composite context (e.g. ContextAnd) is shared with
+     * the interned contexts of the same class, which have the same dependencies and parameters, so that
+     * identical rules are evaluated only once. If such a context exists, its reference count is
+     * incremented, the given context is disposed, and the existing context is returned. Otherwise,
+     * the given context is added into MyContexts and returned. A context without dependencies is
+     * shared only with itself.<br/>
+     *
+     * The name is not part of the structure, so a context with a different name is merged silently
+     * into the existing context, and the existing context keeps its name.<br/>
+     *
+     * Each intern call should be paired with a release call. The dependencies should be interned
+     * before the composite, so that equal dependencies have the same id. The composite contexts
+     * read from the database are interned with one reference, so an intern call after a restart
+     * returns the stored context instead of adding a duplicate, and a release of the stored
+     * context removes it.
+     * @param context the context
+     * @param <T> the context type
+     * @return the interned context
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Context> T intern(@NonNull T context) {
+        String key = getStructuralKey(context);
+        synchronized (internedContexts) {
+            InternedContext interned = internedContexts.get(key);
+            if (interned != null && interned.context != context) {
+                interned.refCount++;
+                if (myContexts.get(context.getId()) != context) {
+                    context.dispose();
+                }
+                return (T) interned.context;
+            }
+            if (interned == null) {
+                interned = new InternedContext(context);
+                internedContexts.put(key, interned);
+                internedKeys.put(context.getId(), key);
+            }
+            interned.refCount++;
+        }
+        add(context);
+        return context;
+    }
+
+    /**
+     * Releases an interned context. When the last reference is released, the context is removed from
+     * MyContexts and disposed. The dependencies of the context are not released.
+     * @param context the interned context
+     */
+    public void release(@NonNull Context context) {
+        synchronized (internedContexts) {
+            String key = internedKeys.get(context.getId());
+            InternedContext interned = key != null ? internedContexts.get(key) : null;
+            if (interned == null || interned.context != context || --interned.refCount > 0) {
+                return;
+            }
+            internedContexts.remove(key);
+            internedKeys.remove(context.getId());
+        }
+        remove(context);
+        context.dispose();
+    }
+
+    /**
+     * Returns the number of references to an interned context
+     * @param context the context
+     * @return the reference count, or 0 if the context is not interned
+     */
+    public int getReferenceCount(@NonNull Context context) {
+        synchronized (internedContexts) {
+            String key = internedKeys.get(context.getId());
+            InternedContext interned = key != null ? internedContexts.get(key) : null;
+            return interned != null && interned.context == context ? interned.refCount : 0;
+        }
+    }
+
+    // Interns a composite context read from the database with one reference. If the database has
+    // several contexts with the same structure, the first one is interned.
+    private void internRestored(@NonNull Context context) {
+        String key = getStructuralKey(context);
+        if (key.equals(context.getId())) {
+            return; // not a composite context
+        }
+        synchronized (internedContexts) {
+            if (!internedContexts.containsKey(key)) {
+                InternedContext interned = new InternedContext(context);
+                interned.refCount = 1;
+                internedContexts.put(key, interned);
+                internedKeys.put(context.getId(), key);
+            }
+        }
+    }
+
+    private static String getStructuralKey(@NonNull Context context) {
+        try {
+            String key = ContextCodecs.getStructuralKey(ContextCodecs.getTag(context.getClass()), context);
+            if (key != null) {
+                return context.getClass().getName() + '\u0000' + key;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return context.getId();
+    }
+
+    /**
+     * Updates MyContextsDatabase with updates in given context. The whole context is rewritten only
+     * if its name, sensors or parameters have changed. Otherwise, only its active state is written.
      * @param context the context
      */
     public void update(@NonNull Context context) {
+        if (myContexts.get(context.getId()) == context) {
+            registry.touch();
+            notifyPublishers();
+        }
+        if (myContextsDao == null) {
+            return;
+        }
         MyContextsDatabase.databaseWriteExecutor.execute(() -> {
             try {
-                myContextsDao.update(new MyContextsEntity(context));
-            } catch (JSONException e) {
+                MyContextsEntity contextEntity = new MyContextsEntity(context);
+                MyContextsEntity storedEntity = storedEntities.get(context.getId());
+                if (storedEntity != null && storedEntity.hasSameParameters(contextEntity)) {
+                    writeActiveState(context);
+                } else {
+                    myContextsDao.update(contextEntity);
+                    storedEntities.put(context.getId(), contextEntity);
+                }
+            } catch (IOException e) {
                 e.printStackTrace();
             }
         });
     }
 
+    /**
+     * Sets the time window, in which the active state changes of a context are coalesced.
+     * Only the latest active state of each context is written into the database, and the states
+     * of all contexts are written in one transaction.
+     * @param delay the time window in milliseconds
+     */
+    public void setActiveStateWriteDelay(long delay) {
+        this.activeStateWriteDelay = delay;
+    }
+
+    // Queues the active state of the context to be written into the database
+    private void writeActiveState(@NonNull Context context) {
+        if (myContextsDao == null) {
+            return;
+        }
+        synchronized (pendingActiveStates) {
+            pendingActiveStates.put(context.getId(), context);
+            if (!activeStateWriteScheduled) {
+                activeStateWriteScheduled = true;
+                MyContextsDatabase.databaseWriteScheduler.schedule(this::flushActiveStates,
+                        activeStateWriteDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Writes the pending active states in one transaction. The active states are read when they
+    // are written, so that a stale state cannot overwrite a newer row written by the update method.
+    private void flushActiveStates() {
+        List<Context> contexts;
+        synchronized (pendingActiveStates) {
+            activeStateWriteScheduled = false;
+            contexts = new ArrayList<>(pendingActiveStates.values());
+            pendingActiveStates.clear();
+        }
+        if (contexts.isEmpty()) {
+            return;
+        }
+        try {
+            myContextsDb.runInTransaction(() -> {
+                for (Context context : contexts) {
+                    myContextsDao.updateActive(context.getId(), context.isActive());
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Removes a context from MyContexts and from contextual ego network
      * @param context the context
@@ -118,6 +446,15 @@ public class MyContexts {
     public void remove(@NonNull Context context) {
         if(myContexts.get(context.getId()) != null) {
             myContexts.remove(context.getId());
+            registry.remove(context.getId());
+            synchronized (internedContexts) {
+                String key = internedKeys.remove(context.getId());
+                if (key != null) {
+                    internedContexts.remove(key);
+                }
+            }
+            notifyPublishers();
+            storedEntities.remove(context.getId());
             if (myContextsDao != null) {
                 MyContextsDatabase.databaseWriteExecutor.execute(() -> {
                     MyContextsEntity myContextsEntity = myContextsDao.getContextById(context.getId());
@@ -148,18 +485,80 @@ public class MyContexts {
             }
         }
         myContexts.clear();
-        MyContextsDatabase.databaseWriteExecutor.execute(myContextsDao::removeAll);
+        registry.clear();
+        synchronized (internedContexts) {
+            internedContexts.clear();
+            internedKeys.clear();
+        }
+        notifyPublishers();
+        storedEntities.clear();
+        if (myContextsDao != null) {
+            synchronized (pendingActiveStates) {
+                pendingActiveStates.clear();
+            }
+            MyContextsDatabase.databaseWriteExecutor.execute(myContextsDao::removeAll);
+        }
     }
 
     /**
-     * Sets context active
+     * Sets context active. The active state is written into the database after the active state write
+     * delay, coalesced with the other active state changes.
      * @param context the context
      * @param active the value (boolean)
      */
     public void setActive(@NonNull Context context, boolean active) {
         if(context.isActive() != active) {
             context.setActive(active);
-            update(context);
+            writeActiveState(context);
+        }
+    }
+
+    /**
+     * Registers a batch listener, which receives the active value changes of the contexts in MyContexts.
+     * The changes of one propagation round are received in one call.
+     * @param listener the ContextBatchListener
+     */
+    public void registerBatchListener(@NonNull ContextBatchListener listener) {
+        synchronized (batchListeners) {
+            if (batchListeners.isEmpty()) {
+                ContextTransaction.registerBatchListener(batchFilter);
+            }
+            batchListeners.add(listener);
+        }
+    }
+
+    /**
+     * Unregisters a batch listener
+     * @param listener the ContextBatchListener
+     */
+    public void unregisterBatchListener(@NonNull ContextBatchListener listener) {
+        synchronized (batchListeners) {
+            if (batchListeners.remove(listener) && batchListeners.isEmpty()) {
+                ContextTransaction.unregisterBatchListener(batchFilter);
+            }
+        }
+    }
+
+    // Forwards the changes of the contexts in MyContexts to the batch listeners
+    private void forwardChanges(@NonNull List<ContextChange> changes) {
+        List<ContextChange> myChanges = changes;
+        for (int i = 0; i < changes.size(); i++) {
+            if (!myContexts.containsKey(changes.get(i).getContextId())) {
+                // copy the changes of MyContexts, when the first other change is found
+                myChanges = new ArrayList<>(changes.size());
+                for (ContextChange change : changes) {
+                    if (myContexts.containsKey(change.getContextId())) {
+                        myChanges.add(change);
+                    }
+                }
+                myChanges = Collections.unmodifiableList(myChanges);
+                break;
+            }
+        }
+        if (!myChanges.isEmpty()) {
+            for (ContextBatchListener listener : batchListeners) {
+                listener.contextsChanged(myChanges);
+            }
         }
     }
 
@@ -173,17 +572,58 @@ public class MyContexts {
     }
 
     /**
-     * Returns currently active contexts
+     * Returns currently active contexts. The time taken is proportional to the number of active contexts,
+     * and after an active value change also to the number of contexts divided by 64.
      * @return the Iterator to active contexts list
      */
     public List<Context> getActiveContexts() {
-        ArrayList<Context> activeContexts = new ArrayList<Context>();
-        for(Context c: myContexts.values()) {
-            if(c.isActive()) {
-                activeContexts.add(c);
-            }
+        return new ArrayList<>(registry.getSnapshot().getActiveContexts());
+    }
+
+    /**
+     * Returns the epoch of MyContexts, which is incremented when a context is added or removed,
+     * when the active value of a context changes, and when a context is updated with the update method.
+     * A value derived from the contexts can be cached and validated by comparing the epoch.
+     * @return the epoch
+     */
+    public long getEpoch() {
+        return registry.getEpoch();
+    }
+
+    /**
+     * Returns an immutable snapshot of the contexts and their active values. The snapshot is shared
+     * until the next change, and it can be passed to other threads without copying.
+     * @return the ContextSnapshot
+     */
+    public ContextSnapshot getSnapshot() {
+        return registry.getSnapshot();
+    }
+
+    /**
+     * Creates a publisher of the snapshots of MyContexts. The subscribers of the publisher receive
+     * the current snapshot, and the latest snapshot after each change they have requested values for.
+     * @return the MyContextsPublisher
+     * @see MyContextsPublisher
+     */
+    public MyContextsPublisher createPublisher() {
+        return new MyContextsPublisher(this);
+    }
+
+    // Called by a publisher, when it has got its first subscriber
+    void addPublisher(@NonNull MyContextsPublisher publisher) {
+        publishers.add(publisher);
+    }
+
+    // Called by a publisher, when its last subscription has been cancelled
+    void removePublisher(@NonNull MyContextsPublisher publisher) {
+        publishers.remove(publisher);
+    }
+
+    // Informs the publishers that contexts have been added, removed or updated
+    private void notifyPublishers() {
+        for (MyContextsPublisher publisher : publishers) {
+            publisher.contextsUpdated();
         }
-        return activeContexts;
     }
 
     /**
@@ -207,4 +647,14 @@ public class MyContexts {
     public ContextualEgoNetwork getCen() {
         return cen;
     }
+
+    // An interned context and the number of its references
+    private static class InternedContext {
+        final Context context;
+        int refCount;
+
+        InternedContext(Context context) {
+            this.context = context;
+        }
+    }
 }
@@ -23,6 +23,9 @@ public interface MyContextsDao {
     @Update
     void update(MyContextsEntity contextEntity);
 
+    @Query("UPDATE mycontexts_table SET active=:active WHERE context_id=:contextId")
+    void updateActive(String contextId, boolean active);
+
     @Query("DELETE FROM mycontexts_table")
     void removeAll();
 
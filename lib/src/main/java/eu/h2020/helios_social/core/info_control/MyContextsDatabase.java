@@ -1,19 +1,28 @@
 package eu.h2020.helios_social.core.info_control;
 
 
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import org.json.JSONObject;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 
 /**
  * MessageContextDatabase provides functionality to save, load, modify
  * and search MessageContext information.
  */
-@Database(entities = {MyContextsEntity.class}, version = 1, exportSchema = false)
+@Database(entities = {MyContextsEntity.class}, version = 2, exportSchema = false)
 public abstract class MyContextsDatabase extends RoomDatabase {
 
     public abstract MyContextsDao myContextsDao();
@@ -22,6 +31,42 @@ public abstract class MyContextsDatabase extends RoomDatabase {
     private static final int NUMBER_OF_THREADS = 4;
     static final ExecutorService databaseWriteExecutor =
             Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    // executes the coalesced active state writes
+    static final ScheduledExecutorService databaseWriteScheduler =
+            Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Migrates the version 1 contexts, which have JSON parameters and a class name, into the binary
+     * ContextCodec encoding with a type tag. The contexts of unknown classes are kept without a type tag,
+     * and they are not restored.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE mycontexts_table_new (context_id TEXT NOT NULL, name TEXT, " +
+                    "active INTEGER NOT NULL, type TEXT, sensors TEXT, data BLOB, PRIMARY KEY(context_id))");
+            try (Cursor cursor = database.query("SELECT context_id, name, active, class, sensors, parameters FROM mycontexts_table")) {
+                while (cursor.moveToNext()) {
+                    String contextId = cursor.getString(0);
+                    String type = ContextCodecs.getLegacyTag(cursor.getString(3));
+                    byte[] data = null;
+                    try {
+                        data = ContextCodecs.encodeLegacy(type, new JSONObject(cursor.getString(5)));
+                    } catch (Exception e) {
+                        Log.w("HeliosMyContexts", "Cannot migrate context " + contextId, e);
+                    }
+                    if (data == null) {
+                        type = null;
+                    }
+                    database.execSQL("INSERT INTO mycontexts_table_new (context_id, name, active, type, sensors, data) " +
+                            "VALUES (?, ?, ?, ?, ?, ?)", new Object[] { contextId, cursor.getString(1),
+                            cursor.getInt(2), type, cursor.getString(4), data });
+                }
+            }
+            database.execSQL("DROP TABLE mycontexts_table");
+            database.execSQL("ALTER TABLE mycontexts_table_new RENAME TO mycontexts_table");
+        }
+    };
 
     public static MyContextsDatabase getDatabase(final android.content.Context context) {
         if (INSTANCE == null) {
@@ -29,6 +74,7 @@ public abstract class MyContextsDatabase extends RoomDatabase {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                             MyContextsDatabase.class, "mycontexts_database")
+                            .addMigrations(MIGRATION_1_2)
                             .build();
                 }
             }
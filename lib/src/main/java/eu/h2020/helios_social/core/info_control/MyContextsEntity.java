@@ -5,26 +5,20 @@ import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import eu.h2020.helios_social.core.context.Context;
-import eu.h2020.helios_social.core.context.ContextAnd;
-import eu.h2020.helios_social.core.context.ContextNot;
-import eu.h2020.helios_social.core.context.ContextOr;
-import eu.h2020.helios_social.core.context.ext.ActivityContext;
-import eu.h2020.helios_social.core.context.ext.LocationContext;
-import eu.h2020.helios_social.core.context.ext.TimeContext;
-import eu.h2020.helios_social.core.context.ext.WifiContext;
 import eu.h2020.helios_social.core.sensor.Sensor;
 
 /**
  * MyContextsEntity class represents a context entity of MyContexts, and it is associated with MyContextsDatabase.
+ * The class-specific parameters of the context are encoded with the ContextCodec of the context type.
  */
 @Entity(tableName = "mycontexts_table")
 public class MyContextsEntity {
@@ -37,20 +31,20 @@ public class MyContextsEntity {
     private final String name;
     @ColumnInfo(name = "active")
     private final boolean active; //
-    @ColumnInfo(name = "class")
-    private final String contextClass;
+    @ColumnInfo(name = "type")
+    private final String type;    // the type tag of the ContextCodec
     @ColumnInfo(name = "sensors")
     private final String sensorIds;
-    @ColumnInfo(name = "parameters")
-    private final String parameters;
+    @ColumnInfo(name = "data", typeAffinity = ColumnInfo.BLOB)
+    private final byte[] data;    // the encoded dependencies and parameters
 
-    public MyContextsEntity(String contextId, String name, boolean active, String contextClass, String sensorIds, String parameters) {
+    public MyContextsEntity(String contextId, String name, boolean active, String type, String sensorIds, byte[] data) {
         this.contextId = contextId;
         this.name = name;
         this.active = active;
-        this.contextClass = contextClass;
+        this.type = type;
         this.sensorIds = sensorIds;
-        this.parameters = parameters;
+        this.data = data;
     }
 
     /**
@@ -58,11 +52,11 @@ public class MyContextsEntity {
      *
      * @param context the Context
      */
-    public MyContextsEntity(@NonNull Context context) throws JSONException {
+    public MyContextsEntity(@NonNull Context context) throws IOException {
         this.contextId = context.getId();
         this.name = context.getName();
         this.active = context.isActive();
-        this.contextClass = context.getClass().getCanonicalName();
+        this.type = ContextCodecs.getTag(context.getClass());
         String sensorIds = "";
         Iterator<Sensor> sensors = context.getSensors();
         int i=0;
@@ -75,7 +69,7 @@ public class MyContextsEntity {
             i++;
         }
         this.sensorIds = sensorIds;
-        this.parameters = MyContextsEntity.getParametersJSON(context).toString();
+        this.data = ContextCodecs.encode(type, context);
     }
 
     @NonNull
@@ -95,12 +89,12 @@ public class MyContextsEntity {
         return sensorIds;
     }
 
-    public String getContextClass() {
-        return contextClass;
+    public String getType() {
+        return type;
     }
 
-    public String getParameters() {
-        return parameters;
+    public byte[] getData() {
+        return data;
     }
 
     private List<Sensor> getSensors() {
@@ -115,86 +109,37 @@ public class MyContextsEntity {
         return sensorList;
     }
 
-    Context getContext(@NonNull Map<String, Context> myContexts) throws JSONException, ClassNotFoundException {
-        Class contextClass = Class.forName(getContextClass());
-        String contextId = getContextId();
-        String name = getName();
-        boolean active = getActive();
-        List<Sensor> sensors = getSensors();
-        JSONObject parameters = new JSONObject(getParameters());
-        Context context = null;
-        if (ContextOr.class.isAssignableFrom(contextClass)) {
-            Context contextA = myContexts.get(parameters.getString("contextA"));
-            Context contextB = myContexts.get(parameters.getString("contextB"));
-            if(contextA != null && contextB != null) {
-                context = new ContextOr(contextId, name, contextA, contextB);
-            }
-        } else if (ContextAnd.class.isAssignableFrom(contextClass)) {
-            Context contextA = myContexts.get(parameters.getString("contextA"));
-            Context contextB = myContexts.get(parameters.getString("contextB"));
-            if(contextA != null && contextB != null) {
-                context = new ContextAnd(contextId, name, contextA, contextB);
-            }
-        } else if (ContextNot.class.isAssignableFrom(contextClass)) {
-            Context contextNot = myContexts.get(parameters.getString("context"));
-            if(contextNot != null) {
-                context = new ContextNot(contextId, name, contextNot);
-            }
-        } else if (ActivityContext.class.isAssignableFrom(contextClass)) {
-            int activityType = parameters.getInt("activity_type");
-            context = new ActivityContext(contextId, name, activityType);
-        } else if (LocationContext.class.isAssignableFrom(contextClass)) {
-            double latitude = parameters.getDouble("latitude");
-            double longitude = parameters.getDouble("longitude");
-            double radius = parameters.getDouble("radius");
-            context = new LocationContext(contextId, name, latitude, longitude, radius);
-        } else if (TimeContext.class.isAssignableFrom(contextClass)) {
-            long startTime = parameters.getLong("start_time");
-            long endTime = parameters.getLong("end_time");
-            int repeat = parameters.getInt("repeat");
-            context = new TimeContext(contextId, name, startTime, endTime, repeat);
-        } else if (WifiContext.class.isAssignableFrom(contextClass)) {
-            String ssid = parameters.getString("ssid");
-            context = new WifiContext(contextId, name, ssid);
-        } else if (Context.class.isAssignableFrom(contextClass)) {
-            context = new Context(contextId, name, active);
-        }
-        if (context != null) {
-            context.addSensors(sensors);
-        }
-        return context;
+    /**
+     * Checks if the other entity has the same name, type, sensors and parameters as this entity.
+     * The active state is not compared.
+     * @param other the other entity
+     * @return true if the entities differ at most in the active state
+     */
+    boolean hasSameParameters(@NonNull MyContextsEntity other) {
+        return contextId.equals(other.contextId) && Objects.equals(name, other.name) &&
+                Objects.equals(type, other.type) && Objects.equals(sensorIds, other.sensorIds) &&
+                Arrays.equals(data, other.data);
     }
 
     /**
-     * Returns this Context class-specific parameters as a JSONObject.
-     * This method is used in storing the context into databases.
-     *
-     * @return the JSONObject
+     * Returns the ids of the contexts, which this context depends on, e.g. the operands of ContextAnd
+     * @return the list of context ids
+     */
+    List<String> getDependencyIds() throws IOException {
+        return ContextCodecs.getDependencyIds(data);
+    }
+
+    /**
+     * Creates the context of this entity
+     * @param myContexts the already created contexts, which include the dependencies of this context
+     * @return the context, or null if the type is unknown or a dependency is missing
      */
-    private static JSONObject getParametersJSON(Context context) throws JSONException {
-        JSONObject json =  new JSONObject();
-        if(context instanceof ContextOr) {
-            json.put("contextA", ((ContextOr)context).getContextA().getId());
-            json.put("contextB", ((ContextOr)context).getContextB().getId());
-        } else if(context instanceof ContextAnd) {
-            json.put("contextA", ((ContextAnd)context).getContextA().getId());
-            json.put("contextB", ((ContextAnd)context).getContextB().getId());
-        } else if(context instanceof ContextNot) {
-            json.put("context", ((ContextNot)context).getContextNot().getId());
-        } else if(context instanceof ActivityContext) {
-            json.put("activity_type", ((ActivityContext)context).getActivityType());
-        } else if(context instanceof LocationContext) {
-            json.put("latitude", ((LocationContext)context).getLat());
-            json.put("longitude", ((LocationContext)context).getLon());
-            json.put("radius", ((LocationContext)context).getRadius());
-        } else if(context instanceof WifiContext) {
-            json.put("ssid", ((WifiContext)context).getSsid());
-        } else if(context instanceof TimeContext) {
-            json.put("start_time", ((TimeContext)context).getStartTime());
-            json.put("end_time", ((TimeContext)context).getEndTime());
-            json.put("repeat", ((TimeContext)context).getRepeat());
+    Context getContext(@NonNull Map<String, Context> myContexts) throws IOException {
+        Context context = ContextCodecs.decode(type, contextId, name, active, data, myContexts);
+        if (context != null) {
+            context.addSensors(getSensors());
         }
-        return json;
+        return context;
     }
 
 }
@@ -0,0 +1,72 @@
+package eu.h2020.helios_social.core.info_control;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import eu.h2020.helios_social.core.context.ConflatingPublisher;
+import eu.h2020.helios_social.core.context.ContextBatchListener;
+import eu.h2020.helios_social.core.context.ContextChange;
+
+/**
+ * MyContextsPublisher publishes the state of MyContexts as a reactive streams Publisher of
+ * ContextSnapshots. The subscribers receive the current snapshot, and a new snapshot when contexts
+ * are added, removed or updated, or their active values change. A slow subscriber receives only
+ * the latest snapshot, when it requests more values.
+ * <pre>
+ *     new MyContextsPublisher(myContexts, executor).subscribe(subscriber);
+ * </pre>
+ * @see ConflatingPublisher
+ */
+public class MyContextsPublisher extends ConflatingPublisher<ContextSnapshot> {
+
+    private final MyContexts myContexts;
+    private final ContextBatchListener listener = this::contextsChanged;
+
+    /**
+     * Creates a MyContextsPublisher, which delivers the snapshots in the thread, which changed
+     * the contexts or requested more values
+     * @param myContexts the MyContexts
+     */
+    public MyContextsPublisher(@NonNull MyContexts myContexts) {
+        this(myContexts, null);
+    }
+
+    /**
+     * Creates a MyContextsPublisher
+     * @param myContexts the MyContexts
+     * @param executor the executor, which delivers the snapshots, or null to deliver in the calling thread
+     */
+    public MyContextsPublisher(@NonNull MyContexts myContexts, Executor executor) {
+        super(executor);
+        this.myContexts = myContexts;
+    }
+
+    @NonNull
+    @Override
+    protected ContextSnapshot getState() {
+        return myContexts.getSnapshot();
+    }
+
+    @Override
+    protected void onFirstSubscription() {
+        myContexts.registerBatchListener(listener);
+        myContexts.addPublisher(this);
+    }
+
+    @Override
+    protected void onLastSubscription() {
+        myContexts.unregisterBatchListener(listener);
+        myContexts.removePublisher(this);
+    }
+
+    // Called by MyContexts, when contexts have been added, removed or updated
+    void contextsUpdated() {
+        publish();
+    }
+
+    private void contextsChanged(@NonNull List<ContextChange> changes) {
+        publish();
+    }
+}
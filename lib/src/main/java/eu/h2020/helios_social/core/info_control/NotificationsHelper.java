@@ -18,6 +18,7 @@ import androidx.core.app.NotificationManagerCompat;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import eu.h2020.helios_social.core.profile.HeliosProfileManager;
 
@@ -113,11 +114,15 @@ public class NotificationsHelper {
      * @return the priority value
      */
     private int getMessagePriority(String title, String message) {
-        if(mInfoControl == null || mInfoControl.getActiveContexts().size() == 0) {
+        if(mInfoControl == null) {
+            return NotificationCompat.PRIORITY_DEFAULT;
+        }
+        List<eu.h2020.helios_social.core.context.Context> activeContexts = mInfoControl.getActiveContexts();
+        if(activeContexts.size() == 0) {
             return NotificationCompat.PRIORITY_DEFAULT;
         }
         int importance = MessageImportance.IMPORTANCE_VERY_LOW;
-        for (eu.h2020.helios_social.core.context.Context context : mInfoControl.getActiveContexts()) {
+        for (eu.h2020.helios_social.core.context.Context context : activeContexts) {
             int messageImportance = mInfoControl.getMessageImportance(new MessageInfo(null, 0, title, message), context);
             if (messageImportance > importance) {
                 importance = messageImportance;
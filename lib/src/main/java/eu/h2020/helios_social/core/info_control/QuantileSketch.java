@@ -0,0 +1,269 @@
+package eu.h2020.helios_social.core.info_control;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * QuantileSketch is a streaming approximate quantile summary of integer values (KLL sketch).
+ * The sketch keeps a hierarchy of compactors: when a compactor becomes full, its values are
+ * sorted and every other value is promoted to the next level with a doubled weight.
+ * The memory of the sketch is bounded by O(k) values regardless of the number of inserted
+ * values, and the rank error of the quantiles is approximately 2/k. Sketches can be merged,
+ * and encoded into bytes to be saved.
+ */
+class QuantileSketch {
+
+    private static final double CAPACITY_RATIO = 2.0/3.0;
+    private static final Random random = new Random();
+
+    private final int k;
+    private int[][] levels;      // values of compactors, level h values have weight 2^h
+    private int[] levelSizes;
+    private int numLevels;
+    private int size;            // number of values in the compactors
+    private int maxSize;         // sum of the compactor capacities
+    private long count;          // number of inserted values
+
+    // sorted view of the values and the cumulative weights, rebuilt on query when needed
+    private int[] sortedValues;
+    private long[] cumulativeWeights;
+    private int sortedSize;
+    private boolean sorted;
+
+    /**
+     * Creates a QuantileSketch
+     * @param k the accuracy parameter. The rank error is approximately 2/k.
+     */
+    QuantileSketch(int k) {
+        this.k = Math.max(k, 8);
+        this.levels = new int[4][];
+        this.levelSizes = new int[4];
+        this.numLevels = 0;
+        this.size = 0;
+        this.count = 0;
+        grow();
+    }
+
+    /**
+     * Returns the accuracy parameter k for given rank error
+     * @param error the rank error, e.g. 0.01
+     * @return the accuracy parameter
+     */
+    static int accuracyForError(double error) {
+        return (int) Math.ceil(2.0/error);
+    }
+
+    /**
+     * Returns the number of inserted values
+     * @return the number of values
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Inserts a value into the sketch
+     * @param value the value
+     */
+    void update(int value) {
+        append(0, value);
+        size++;
+        count++;
+        sorted = false;
+        if (size >= maxSize) {
+            compress();
+        }
+    }
+
+    /**
+     * Returns an approximate quantile of the inserted values
+     * @param quantile the quantile in range [0.0, 1.0], e.g. 0.5 for the median and 0.9 for the 90th percentile
+     * @return the approximate quantile value, or -1 if the sketch is empty
+     */
+    int getQuantile(double quantile) {
+        if (count == 0) {
+            return -1;
+        }
+        if (!sorted) {
+            sort();
+        }
+        long totalWeight = cumulativeWeights[sortedSize - 1];
+        long rank = (long) Math.ceil(Math.max(0.0, Math.min(1.0, quantile)) * totalWeight);
+        int i = Arrays.binarySearch(cumulativeWeights, 0, sortedSize, Math.max(rank, 1));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return sortedValues[Math.min(i, sortedSize - 1)];
+    }
+
+    /**
+     * Merges the values of another sketch into this sketch
+     * @param other the other sketch
+     */
+    void merge(QuantileSketch other) {
+        while (numLevels < other.numLevels) {
+            grow();
+        }
+        for (int h = 0; h < other.numLevels; h++) {
+            for (int i = 0; i < other.levelSizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+            size += other.levelSizes[h];
+        }
+        count += other.count;
+        sorted = false;
+        while (size >= maxSize) {
+            compress();
+        }
+    }
+
+    /**
+     * Encodes the sketch into bytes
+     * @return the encoded sketch
+     * @see #fromBytes(byte[])
+     */
+    byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 4*numLevels + 4*size);
+        buffer.putInt(k);
+        buffer.putLong(count);
+        buffer.putInt(numLevels);
+        for (int h = 0; h < numLevels; h++) {
+            buffer.putInt(levelSizes[h]);
+            for (int i = 0; i < levelSizes[h]; i++) {
+                buffer.putInt(levels[h][i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a sketch, which is encoded by toBytes
+     * @param data the encoded sketch
+     * @return the sketch
+     * @throws IllegalArgumentException if the data is not a valid sketch
+     */
+    static QuantileSketch fromBytes(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            QuantileSketch sketch = new QuantileSketch(buffer.getInt());
+            long count = buffer.getLong();
+            int numLevels = buffer.getInt();
+            if (count < 0 || numLevels < 1 || numLevels > 64) {
+                throw new IllegalArgumentException("Invalid sketch");
+            }
+            while (sketch.numLevels < numLevels) {
+                sketch.grow();
+            }
+            for (int h = 0; h < numLevels; h++) {
+                int n = buffer.getInt();
+                if (n < 0 || n > buffer.remaining() / 4) {
+                    throw new IllegalArgumentException("Invalid sketch");
+                }
+                for (int i = 0; i < n; i++) {
+                    sketch.append(h, buffer.getInt());
+                }
+                sketch.size += n;
+            }
+            sketch.count = count;
+            return sketch;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Invalid sketch", e);
+        }
+    }
+
+    /**
+     * Removes all the values from the sketch
+     */
+    void clear() {
+        levels = new int[4][];
+        levelSizes = new int[4];
+        numLevels = 0;
+        size = 0;
+        count = 0;
+        sorted = false;
+        grow();
+    }
+
+    private int capacity(int level) {
+        int depth = numLevels - level - 1;
+        return (int) Math.ceil(Math.pow(CAPACITY_RATIO, depth) * k) + 1;
+    }
+
+    private void grow() {
+        if (numLevels == levels.length) {
+            levels = Arrays.copyOf(levels, 2*numLevels);
+            levelSizes = Arrays.copyOf(levelSizes, 2*numLevels);
+        }
+        levels[numLevels] = new int[8];
+        numLevels++;
+        maxSize = 0;
+        for (int h = 0; h < numLevels; h++) {
+            maxSize += capacity(h);
+        }
+    }
+
+    private void append(int level, int value) {
+        int[] values = levels[level];
+        if (levelSizes[level] == values.length) {
+            values = Arrays.copyOf(values, 2*values.length);
+            levels[level] = values;
+        }
+        values[levelSizes[level]++] = value;
+    }
+
+    // Compacts the first full compactor into the next level
+    private void compress() {
+        for (int h = 0; h < numLevels; h++) {
+            if (levelSizes[h] >= capacity(h)) {
+                if (h + 1 >= numLevels) {
+                    grow();
+                }
+                int[] values = levels[h];
+                int n = levelSizes[h];
+                // an odd value count leaves the last value in this level
+                int kept = n % 2;
+                Arrays.sort(values, 0, n - kept);
+                for (int i = random.nextBoolean() ? 1 : 0; i < n - kept; i += 2) {
+                    append(h + 1, values[i]);
+                }
+                if (kept > 0) {
+                    values[0] = values[n - 1];
+                }
+                levelSizes[h] = kept;
+                size = 0;
+                for (int level = 0; level < numLevels; level++) {
+                    size += levelSizes[level];
+                }
+                if (size < maxSize) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void sort() {
+        if (sortedValues == null || sortedValues.length < size) {
+            sortedValues = new int[size];
+            cumulativeWeights = new long[size];
+        }
+        // sort the values by (value, level) pairs packed into longs
+        long[] entries = new long[size];
+        int n = 0;
+        for (int h = 0; h < numLevels; h++) {
+            for (int i = 0; i < levelSizes[h]; i++) {
+                entries[n++] = ((long) levels[h][i] << 8) | h;
+            }
+        }
+        Arrays.sort(entries, 0, n);
+        long weight = 0;
+        for (int i = 0; i < n; i++) {
+            sortedValues[i] = (int) (entries[i] >> 8);
+            weight += 1L << (int) (entries[i] & 0xff);
+            cumulativeWeights[i] = weight;
+        }
+        sortedSize = n;
+        sorted = true;
+    }
+}
@@ -0,0 +1,55 @@
+package eu.h2020.helios_social.core.info_control;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * ReactionTimeSketchEntity class represents an encoded reaction time sketch of ReactionTimeSketches,
+ * which is saved into MessageContextDatabase, so that the sketches are kept over restarts.
+ */
+@Entity(tableName = "reaction_time_sketch_table")
+public class ReactionTimeSketchEntity {
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "sketch_key")
+    String key;         // unique key of the (context, sender) pair
+    @ColumnInfo(name = "context")
+    String contextID;   // or null for any context
+    @ColumnInfo(name = "sender")
+    String from;        // or null for any sender
+    @ColumnInfo(name = "data", typeAffinity = ColumnInfo.BLOB)
+    byte[] data;        // the encoded QuantileSketch
+
+    /**
+     * Creates a ReactionTimeSketchEntity
+     * @param key the unique key of the (context, sender) pair
+     * @param contextID the context id, or null for any context
+     * @param from the sender, or null for any sender
+     * @param data the encoded sketch
+     */
+    public ReactionTimeSketchEntity(@NonNull String key, String contextID, String from, byte[] data) {
+        this.key = key;
+        this.contextID = contextID;
+        this.from = from;
+        this.data = data;
+    }
+
+    @NonNull
+    public String getKey() {
+        return key;
+    }
+
+    public String getContextID() {
+        return contextID;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,190 @@
+package eu.h2020.helios_social.core.info_control;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReactionTimeSketches keeps streaming quantile sketches of message reaction times.
+ * The sketches are grouped by (context, sender), by context, by sender and over all messages,
+ * like in MessageContextIndex. Unlike the index, the sketches are not limited to the in-memory
+ * history window: they summarize all the reaction times inserted since the sketches were created,
+ * using a fixed amount of memory per key. The changed sketches are saved into the database with
+ * the inserted messages, and restored when the repository is created, so the sketches are kept
+ * over restarts. Deleting a message does not remove its reaction time from the sketches; only
+ * deleting all the messages clears them.
+ * @see QuantileSketch
+ */
+class ReactionTimeSketches {
+
+    private final int k;
+    private final Map<String, Map<String, Sketch>> byContextFrom;
+    private final Map<String, Sketch> byContext;
+    private final Map<String, Sketch> byFrom;
+    private Sketch total;
+    private final List<Sketch> dirty; // the sketches changed since they were saved
+
+    // a sketch of a (context, sender) pair
+    private static class Sketch {
+        final String contextId; // or null for any context
+        final String from;      // or null for any sender
+        QuantileSketch values;
+        boolean dirty;
+
+        Sketch(String contextId, String from, QuantileSketch values) {
+            this.contextId = contextId;
+            this.from = from;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Creates ReactionTimeSketches
+     * @param error the approximate rank error of the quantiles, e.g. 0.01
+     */
+    ReactionTimeSketches(double error) {
+        this.k = QuantileSketch.accuracyForError(error);
+        this.byContextFrom = new HashMap<>();
+        this.byContext = new HashMap<>();
+        this.byFrom = new HashMap<>();
+        this.total = new Sketch(null, null, new QuantileSketch(k));
+        this.dirty = new ArrayList<>();
+    }
+
+    /**
+     * Adds the reaction time of a message into the sketches
+     * @param messageContext the MessageContext
+     */
+    synchronized void add(MessageContext messageContext) {
+        int reactionTime = messageContext.getReactionTime();
+        if (reactionTime < 0) {
+            return;
+        }
+        String contextId = messageContext.getContextID();
+        String from = messageContext.getFrom();
+        update(total, reactionTime);
+        update(getOrCreate(contextId, null), reactionTime);
+        if (from != null) {
+            update(getOrCreate(null, from), reactionTime);
+            update(getOrCreate(contextId, from), reactionTime);
+        }
+    }
+
+    /**
+     * Removes all the sketches
+     */
+    synchronized void clear() {
+        byContextFrom.clear();
+        byContext.clear();
+        byFrom.clear();
+        total = new Sketch(null, null, new QuantileSketch(k));
+        dirty.clear();
+    }
+
+    /**
+     * Restores the saved sketches. The values added before the sketches are restored are merged
+     * into the restored sketches.
+     * @param entities the saved sketches
+     */
+    synchronized void restore(List<ReactionTimeSketchEntity> entities) {
+        for (ReactionTimeSketchEntity entity : entities) {
+            QuantileSketch values;
+            try {
+                values = QuantileSketch.fromBytes(entity.getData());
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+                continue;
+            }
+            Sketch sketch = getOrCreate(entity.getContextID(), entity.getFrom());
+            values.merge(sketch.values);
+            sketch.values = values;
+        }
+    }
+
+    /**
+     * Returns the encoded sketches, which have changed since they were last returned
+     * @return the changed sketches
+     */
+    synchronized List<ReactionTimeSketchEntity> takeDirty() {
+        List<ReactionTimeSketchEntity> entities = new ArrayList<>(dirty.size());
+        for (Sketch sketch : dirty) {
+            entities.add(new ReactionTimeSketchEntity(key(sketch.contextId, sketch.from),
+                    sketch.contextId, sketch.from, sketch.values.toBytes()));
+            sketch.dirty = false;
+        }
+        dirty.clear();
+        return entities;
+    }
+
+    /**
+     * Marks sketches changed again, e.g. when they could not be saved
+     * @param entities the sketches returned by takeDirty
+     */
+    synchronized void setDirty(List<ReactionTimeSketchEntity> entities) {
+        for (ReactionTimeSketchEntity entity : entities) {
+            Sketch sketch = get(entity.getContextID(), entity.getFrom());
+            if (sketch != null && !sketch.dirty) {
+                sketch.dirty = true;
+                dirty.add(sketch);
+            }
+        }
+    }
+
+    /**
+     * Returns an approximate quantile of the reaction times
+     * @param contextId the context id, or null for any context
+     * @param from the sender, or null for any sender
+     * @param quantile the quantile in range [0.0, 1.0]
+     * @return the reaction time quantile, or -1 if there are no messages with reaction time
+     */
+    synchronized int getQuantile(String contextId, String from, double quantile) {
+        Sketch sketch = get(contextId, from);
+        return sketch != null ? sketch.values.getQuantile(quantile) : -1;
+    }
+
+    // Returns the unique key of a (context, sender) pair
+    static String key(String contextId, String from) {
+        return (contextId != null ? contextId.length() + ":" + contextId : "-") + (from != null ? "/" + from : "");
+    }
+
+    private void update(Sketch sketch, int reactionTime) {
+        sketch.values.update(reactionTime);
+        if (!sketch.dirty) {
+            sketch.dirty = true;
+            dirty.add(sketch);
+        }
+    }
+
+    private Sketch get(String contextId, String from) {
+        if (contextId == null && from == null) {
+            return total;
+        } else if (from == null) {
+            return byContext.get(contextId);
+        } else if (contextId == null) {
+            return byFrom.get(from);
+        }
+        Map<String, Sketch> contextFrom = byContextFrom.get(contextId);
+        return contextFrom != null ? contextFrom.get(from) : null;
+    }
+
+    private Sketch getOrCreate(String contextId, String from) {
+        Sketch sketch = get(contextId, from);
+        if (sketch == null) {
+            sketch = new Sketch(contextId, from, new QuantileSketch(k));
+            if (from == null) {
+                byContext.put(contextId, sketch);
+            } else if (contextId == null) {
+                byFrom.put(from, sketch);
+            } else {
+                Map<String, Sketch> contextFrom = byContextFrom.get(contextId);
+                if (contextFrom == null) {
+                    contextFrom = new HashMap<>();
+                    byContextFrom.put(contextId, contextFrom);
+                }
+                contextFrom.put(from, sketch);
+            }
+        }
+        return sketch;
+    }
+}
@@ -1,16 +1,19 @@
 package eu.h2020.helios_social.core.sensor;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import eu.h2020.helios_social.core.context.ContextTransaction;
 
 /**
  * Sensor is an abstract base class for Helios sensors (e.g. location and acceleration sensors).
  * An application can obtain updated values from the sensor via registered listeners (see registerValueListener method),
  * which implement the SensorValueListener interface.
+ * Sensors are thread-safe: the listeners are kept in a copy-on-write array, and the values are
+ * dispatched to them without locking.
  * @see eu.h2020.helios_social.core.sensor.SensorValueListener
  */
 public abstract class Sensor {
@@ -18,9 +21,10 @@ public abstract class Sensor {
 	// identifier of this
 	private final String id;
 	// listeners of this sensor
-	private final List<SensorValueListener> sensorListeners;
+	private volatile SensorValueListener[] sensorListeners;
 	// all sensors
-	private static final Map<String,Sensor> sensors = new HashMap<String, Sensor>();
+	private static final Map<String,Sensor> sensors = new ConcurrentHashMap<String, Sensor>();
+	private static final SensorValueListener[] NO_LISTENERS = new SensorValueListener[0];
 
 	/**
 	 * Creates a Sensor
@@ -28,8 +32,8 @@ public abstract class Sensor {
 	 */
 	public Sensor(String id) {
 		this.id =  (id == null) ? UUID.randomUUID().toString() : id;
-		this.sensorListeners = new ArrayList<SensorValueListener>();
-		this.sensors.put(id, this);
+		this.sensorListeners = NO_LISTENERS;
+		sensors.put(this.id, this);
 	}
 
 	/**
@@ -57,12 +61,18 @@ public abstract class Sensor {
 
 	/**
 	 * Receives a data value from the sensor and notifies all
-	 * the registered SensorValueListeners.
+	 * the registered SensorValueListeners. The listeners are notified in a ContextTransaction,
+	 * so that the context changes caused by the value are propagated together.
 	 * @param value the value
 	 */
 	public void receiveValue(Object value) {
-		for (SensorValueListener sensorListener : sensorListeners) {
-			sensorListener.receiveValue(value);
+		ContextTransaction.begin();
+		try {
+			for (SensorValueListener sensorListener : sensorListeners) {
+				sensorListener.receiveValue(value);
+			}
+		} finally {
+			ContextTransaction.commit();
 		}
 	}
 
@@ -71,7 +81,12 @@ public abstract class Sensor {
 	 * @param listener the listener
 	 */
 	public void registerValueListener(SensorValueListener listener) {
-		sensorListeners.add(listener);
+		synchronized (this) {
+			SensorValueListener[] current = sensorListeners;
+			SensorValueListener[] updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = listener;
+			sensorListeners = updated;
+		}
 	}
 
 	/**
@@ -79,7 +94,18 @@ public abstract class Sensor {
 	 * @param listener the listener
 	 */
 	public void unregisterValueListener(SensorValueListener listener) {
-		sensorListeners.remove(listener);
+		synchronized (this) {
+			SensorValueListener[] current = sensorListeners;
+			for (int i = 0; i < current.length; i++) {
+				if (current[i].equals(listener)) {
+					SensorValueListener[] updated = new SensorValueListener[current.length - 1];
+					System.arraycopy(current, 0, updated, 0, i);
+					System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+					sensorListeners = current.length > 1 ? updated : NO_LISTENERS;
+					return;
+				}
+			}
+		}
 	}
 
 	/**
@@ -87,7 +113,7 @@ public abstract class Sensor {
 	 * @return the listeners
 	 */
 	public Iterator<SensorValueListener> getValueListeners() {
-		return sensorListeners.iterator();
+		return Arrays.asList(sensorListeners).iterator();
 	}
 
 	/**
@@ -102,6 +128,6 @@ public abstract class Sensor {
 	@Override
 	protected void finalize() throws Throwable {
 		super.finalize();
-		this.sensors.remove(id, this);
+		sensors.remove(id, this);
 	}
 }
@@ -1,9 +1,12 @@
 package eu.h2020.helios_social.core.sensor.ext;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import eu.h2020.helios_social.core.context.ContextTimer;
 import eu.h2020.helios_social.core.sensor.Sensor;
 
 /**
@@ -11,21 +14,40 @@ import eu.h2020.helios_social.core.sensor.Sensor;
  * It extends the abstract base class sensor.
  * Time is obtained directly from the system, and sensor value listeners
  * are notified with given time interval about the current time.
+ * The updates of all the time sensors are scheduled by the shared ContextTimer, and the values
+ * are delivered to the listeners on an executor, so that a slow listener does not delay
+ * the other tasks of the timer.
  */
 public class TimeSensor extends Sensor {
     int timeInterval;
-    ScheduledExecutorService scheduler;
+    ContextTimer.Timeout timeout;
     boolean running;
+    int generation;     // incremented on each start, so that the updates of a stopped run end
+    private final Executor executor;
+
+    private static volatile ExecutorService defaultExecutor;
 
     /**
      * Creates a new TimeSensor
      * @param timeInterval the time interval in milliseconds
      */
     public TimeSensor(String id, int timeInterval) {
+        this(id, timeInterval, null);
+    }
+
+    /**
+     * Creates a new TimeSensor
+     * @param id the identifier of the sensor
+     * @param timeInterval the time interval in milliseconds
+     * @param executor the executor, which delivers the values to the listeners, or null to use
+     *                 the thread shared by the time sensors
+     */
+    public TimeSensor(String id, int timeInterval, Executor executor) {
         super(id);
         this.timeInterval = timeInterval;
-        this.scheduler = null;
+        this.timeout = null;
         this.running = false;
+        this.executor = executor != null ? executor : getDefaultExecutor();
     }
 
     /**
@@ -37,25 +59,62 @@ public class TimeSensor extends Sensor {
     }
 
     @Override
-    public void startUpdates() {
-        if(!running || scheduler == null) {
+    public synchronized void startUpdates() {
+        if(!running) {
             running = true;
-            scheduler = Executors.newSingleThreadScheduledExecutor();
-            scheduler.scheduleWithFixedDelay
-                    (new Runnable() {
-                        public void run() {
-                            receiveValue(System.currentTimeMillis());
-                        }
-                    }, 0, timeInterval, TimeUnit.MILLISECONDS);
+            int started = ++generation;
+            timeout = ContextTimer.getDefault().schedule(() -> deliver(started), 0, TimeUnit.MILLISECONDS);
         }
     }
 
     @Override
-    public void stopUpdates() {
-        if(scheduler != null) {
-            // stops the scheduler thread
-            scheduler.shutdownNow();
-            running = false;
+    public synchronized void stopUpdates() {
+        if(timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+        running = false;
+    }
+
+    // Hands the update from the timer thread over to the executor
+    private void deliver(int started) {
+        try {
+            executor.execute(() -> update(started));
+        } catch (RejectedExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Sends the current time to the listeners, and schedules the next update with the time interval
+    private void update(int started) {
+        synchronized (this) {
+            if(!running || started != generation) {
+                return;
+            }
+        }
+        receiveValue(System.currentTimeMillis());
+        synchronized (this) {
+            if(running && started == generation) {
+                timeout = ContextTimer.getDefault().schedule(() -> deliver(started), timeInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Returns the executor shared by the time sensors, which delivers the values in one daemon thread
+    private static Executor getDefaultExecutor() {
+        ExecutorService executor = defaultExecutor;
+        if (executor == null) {
+            synchronized (TimeSensor.class) {
+                if (defaultExecutor == null) {
+                    defaultExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "HeliosTimeSensor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                executor = defaultExecutor;
+            }
         }
+        return executor;
     }
 }
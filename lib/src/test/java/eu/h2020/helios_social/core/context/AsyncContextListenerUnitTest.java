@@ -0,0 +1,76 @@
+package eu.h2020.helios_social.core.context;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Asynchronous context listener local unit tests
+ *
+ * @see AsyncContextListener
+ */
+public class AsyncContextListenerUnitTest {
+
+    @Test
+    public void asyncListener_dropsOldest() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final List<Boolean> values = new ArrayList<>();
+        AsyncContextListener listener = new AsyncContextListener(active -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            values.add(active);
+        }, executor, 2);
+        Context context = new Context("A", false);
+        context.registerContextListener(listener);
+
+        // the first change is being delivered, the next four are queued in a queue of two
+        for (int i = 0; i < 5; i++) {
+            context.setActive(i % 2 == 0);
+            Thread.sleep(10);
+        }
+        blocked.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, listener.getDroppedCount());
+        assertEquals(Arrays.asList(true, false, true), values);
+    }
+
+    @Test
+    public void asyncListener_coalesces() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final List<Boolean> values = new ArrayList<>();
+        Context context = new Context("A", false);
+        context.registerContextListener(new AsyncContextListener(active -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            values.add(active);
+        }, executor));
+
+        context.setActive(true);
+        Thread.sleep(10);
+        // the changes are coalesced to the latest value, which equals to the delivered value
+        context.setActive(false);
+        context.setActive(true);
+        blocked.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(true), values);
+    }
+}
@@ -3,6 +3,11 @@ package eu.h2020.helios_social.core.context;
 import org.junit.Test;
 
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.h2020.helios_social.core.context.ext.LocationContext;
+import eu.h2020.helios_social.core.sensor.Sensor;
+import eu.h2020.helios_social.core.sensor.SensorValueListener;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -79,4 +84,117 @@ public class BaseContextUnitTest {
         context.setActive(false);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void contextConcurrentSetActive() throws InterruptedException {
+        final Context context = new Context("testContext", false);
+        final AtomicInteger activations = new AtomicInteger();
+        final AtomicInteger deactivations = new AtomicInteger();
+        context.registerContextListener(active -> (active ? activations : deactivations).incrementAndGet());
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final boolean first = t % 2 == 0;
+            threads[t] = new Thread(() -> {
+                ContextListener listener = active -> { };
+                for (int i = 0; i < 10000; i++) {
+                    context.setActive(first == (i % 2 == 0));
+                    // listeners may be registered during the notifications
+                    context.registerContextListener(listener);
+                    context.unregisterContextListener(listener);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // each change is notified exactly once
+        int changes = activations.get() - deactivations.get();
+        assertEquals(context.isActive() ? 1 : 0, changes);
+    }
+
+    @Test
+    public void contextAttributes() {
+        Context context = new Context("testContext", false);
+        DoubleContextAttribute distance = new DoubleContextAttribute("distance", Double.NaN);
+        IntContextAttribute rssi = new IntContextAttribute("rssi", -70);
+        context.addAttribute(distance);
+        context.addAttribute(rssi);
+        assertTrue(context.getAttribute("rssi") == rssi);
+        assertEquals(-70, ((IntContextAttribute) context.getAttribute("rssi")).getInt());
+
+        final AtomicInteger changes = new AtomicInteger();
+        distance.registerAttributeListener(attribute -> changes.incrementAndGet());
+        long version = distance.getVersion();
+        distance.setDouble(12.5);
+        distance.setDouble(12.5);
+        // only the change increments the version and is notified
+        assertEquals(version + 1, distance.getVersion());
+        assertEquals(1, changes.get());
+        assertEquals(12.5, distance.getDouble(), 0.0);
+        assertEquals(12.5, distance.getValue());
+
+        context.removeAttribute(distance);
+        assertTrue(context.getAttribute("distance") == null);
+        Iterator<ContextAttribute> attributes = context.getAttributes();
+        assertTrue(attributes.next() == rssi);
+        assertFalse(attributes.hasNext());
+    }
+
+    @Test
+    public void typedContextAttributes() {
+        LocationContext context = new LocationContext("location", 60.1, 24.9, 100.0);
+        // the distance attribute is a field of the context, and the added attributes follow it
+        assertTrue(context.getAttribute(LocationContext.ATTRIBUTE_DISTANCE) == context.getDistanceAttribute());
+        IntContextAttribute rssi = new IntContextAttribute("rssi", -70);
+        context.addAttribute(rssi);
+        assertTrue(context.getAttribute("rssi") == rssi);
+        Iterator<ContextAttribute> attributes = context.getAttributes();
+        assertTrue(attributes.next() == context.getDistanceAttribute());
+        assertTrue(attributes.next() == rssi);
+        assertFalse(attributes.hasNext());
+    }
+
+    @Test
+    public void contextFootprint() {
+        final int n = 20000;
+        Sensor sensor = new Sensor("sensor") {
+            @Override
+            public void startUpdates() {
+            }
+
+            @Override
+            public void stopUpdates() {
+            }
+        };
+        Context[] contexts = new Context[n];
+        long before = usedMemory();
+        for (int i = 0; i < n; i++) {
+            contexts[i] = new SensorContext("Context", sensor);
+        }
+        long after = usedMemory();
+        // a context with a generated id and one sensor, about 130 bytes on a 64-bit JVM
+        long bytesPerContext = (after - before) / n;
+        assertTrue("bytes per context " + bytesPerContext, bytesPerContext < 160);
+        assertEquals(n, contexts.length);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static class SensorContext extends Context implements SensorValueListener {
+        SensorContext(String name, Sensor sensor) {
+            super(name, false);
+            addSensor(sensor);
+        }
+
+        @Override
+        public void receiveValue(Object value) {
+        }
+    }
+}
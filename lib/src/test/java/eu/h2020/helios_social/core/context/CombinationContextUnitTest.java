@@ -2,6 +2,11 @@ package eu.h2020.helios_social.core.context;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -11,6 +16,9 @@ import static org.junit.Assert.assertTrue;
  * @see ContextAnd
  * @see ContextOr
  * @see ContextNot
+ * @see ContextAll
+ * @see ContextAny
+ * @see ContextAtLeast
  */
 public class CombinationContextUnitTest {
     Context contextA = new Context("A", true);
@@ -51,4 +59,75 @@ public class CombinationContextUnitTest {
         Context contextNotAAndB = new ContextAnd("NotAAndB", contextNotA, contextB);
         assertFalse(contextNotAAndB.isActive());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void contextAll_isCorrect() {
+        contextA.setActive(true);
+        contextB.setActive(false);
+        Context contextAll = new ContextAll("All", Arrays.asList(contextA, contextB, contextNotB));
+        assertFalse(contextAll.isActive());
+        contextB.setActive(true);   // NotB becomes inactive
+        assertFalse(contextAll.isActive());
+        Context contextAllAB = new ContextAll("AllAB", Arrays.asList(contextA, contextB));
+        assertTrue(contextAllAB.isActive());
+        contextA.setActive(false);
+        assertFalse(contextAllAB.isActive());
+    }
+
+    @Test
+    public void contextAny_isCorrect() {
+        contextA.setActive(false);
+        contextB.setActive(false);
+        Context contextAny = new ContextAny("Any", Arrays.asList(contextA, contextB));
+        assertFalse(contextAny.isActive());
+        contextB.setActive(true);
+        assertTrue(contextAny.isActive());
+        contextA.setActive(true);
+        contextB.setActive(false);
+        assertTrue(contextAny.isActive());
+        contextA.setActive(false);
+        assertFalse(contextAny.isActive());
+    }
+
+    @Test
+    public void contextAtLeast_isCorrect() {
+        List<Context> leaves = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            leaves.add(new Context("leaf" + i, false));
+        }
+        ContextAtLeast contextAtLeast = new ContextAtLeast("AtLeast", 15, leaves);
+        for (int i = 0; i < 14; i++) {
+            leaves.get(i).setActive(true);
+        }
+        assertEquals(14, contextAtLeast.getActiveCount());
+        assertFalse(contextAtLeast.isActive());
+        leaves.get(19).setActive(true);
+        assertTrue(contextAtLeast.isActive());
+        leaves.get(19).setActive(true);  // no change
+        assertEquals(15, contextAtLeast.getActiveCount());
+        leaves.get(0).setActive(false);
+        assertFalse(contextAtLeast.isActive());
+    }
+
+    @Test
+    public void contextAtLeast_countsEachChangeOnce() {
+        Context contextA = new Context("A", true);
+        Context contextB = new Context("B", false);
+        ContextAtLeast contextAtLeast = new ContextAtLeast("AtLeast", 2, Arrays.asList(contextA, contextA, contextB));
+        // a related context is counted as many times as it is related
+        assertEquals(2, contextAtLeast.getActiveCount());
+        assertTrue(contextAtLeast.isActive());
+        // a late notification of a change, which was already counted at creation, is ignored
+        contextAtLeast.inputChanged(contextA, true);
+        assertEquals(2, contextAtLeast.getActiveCount());
+        contextB.setActive(true);
+        assertEquals(3, contextAtLeast.getActiveCount());
+        // a notification of an older change is counted with the current value
+        contextB.setActive(false);
+        contextAtLeast.inputChanged(contextB, true);
+        assertEquals(2, contextAtLeast.getActiveCount());
+        contextA.setActive(false);
+        assertEquals(0, contextAtLeast.getActiveCount());
+        assertFalse(contextAtLeast.isActive());
+    }
+}
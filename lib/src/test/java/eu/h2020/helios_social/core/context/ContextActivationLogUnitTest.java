@@ -0,0 +1,82 @@
+package eu.h2020.helios_social.core.context;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Context activation log local unit tests
+ *
+ * @see ContextActivationLog
+ */
+public class ContextActivationLogUnitTest {
+
+    private static final long HOUR = 3600 * 1000L;
+
+    @Test
+    public void activationLog_queries() {
+        ContextActivationLog log = new ContextActivationLog(10 * 24 * HOUR);
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2020, Calendar.MARCH, 2, 0, 0, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        long day = calendar.getTimeInMillis();
+
+        // at work 9-17 on two days, and 22-02 over the midnight
+        log.record("work", true, day + 9 * HOUR);
+        log.record("work", false, day + 17 * HOUR);
+        log.record("work", true, day + 22 * HOUR);
+        log.record("work", false, day + 26 * HOUR);
+        log.record("work", true, day + 33 * HOUR);
+        log.record("work", false, day + 41 * HOUR);
+        assertEquals(6, log.size("work"));
+
+        assertFalse(log.wasActive("work", day + 8 * HOUR));
+        assertTrue(log.wasActive("work", day + 9 * HOUR));
+        assertTrue(log.wasActive("work", day + 16 * HOUR));
+        assertFalse(log.wasActive("work", day + 17 * HOUR));
+        assertTrue(log.wasActive("work", day + 25 * HOUR));
+        assertFalse(log.wasActive("home", day + 25 * HOUR));
+
+        assertEquals(12 * HOUR, log.getActiveTime("work", day + 12 * HOUR, day + 36 * HOUR));
+        long[] daily = log.getDailyActiveTimes("work", day + 12 * HOUR, 3);
+        assertEquals(10 * HOUR, daily[0]);
+        assertEquals(10 * HOUR, daily[1]);
+        assertEquals(0, daily[2]);
+    }
+
+    @Test
+    public void activationLog_retention() {
+        ContextActivationLog log = new ContextActivationLog(10 * HOUR);
+        for (int i = 0; i < 1000; i++) {
+            log.record("A", i % 2 == 0, i * HOUR);
+        }
+        // the changes of the last ten hours, and the latest change before them
+        assertEquals(11, log.size("A"));
+        assertFalse(log.wasActive("A", 500 * HOUR));
+        assertTrue(log.wasActive("A", 990 * HOUR + 1));
+        assertEquals(5 * HOUR, log.getActiveTime("A", 989 * HOUR, 999 * HOUR));
+    }
+
+    @Test
+    public void activationLog_recordsBatches() {
+        ContextActivationLog log = new ContextActivationLog(HOUR);
+        Context contextA = new Context("A", false);
+        Context contextNotA = new ContextNot("NotA", contextA);
+        ContextTransaction.registerBatchListener(log);
+        try {
+            contextA.setActive(true);
+            contextA.setActive(false);
+            contextA.setActive(true);
+        } finally {
+            ContextTransaction.unregisterBatchListener(log);
+        }
+        assertEquals(3, log.size(contextA.getId()));
+        assertEquals(3, log.size(contextNotA.getId()));
+        assertTrue(log.wasActive(contextA.getId(), System.currentTimeMillis()));
+        assertFalse(log.wasActive(contextNotA.getId(), System.currentTimeMillis()));
+    }
+}
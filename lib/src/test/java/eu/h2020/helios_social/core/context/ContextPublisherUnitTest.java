@@ -0,0 +1,100 @@
+package eu.h2020.helios_social.core.context;
+
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Context publisher local unit tests
+ *
+ * @see ContextPublisher
+ */
+public class ContextPublisherUnitTest {
+
+    @Test
+    public void contextPublisher_demand() {
+        Context context = new Context("A", false);
+        ContextPublisher publisher = new ContextPublisher(context);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        assertEquals(1, publisher.getSubscriptionCount());
+
+        // nothing is sent without demand
+        assertTrue(subscriber.values.isEmpty());
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.values.size());
+        assertFalse(subscriber.values.get(0));
+
+        // the changes without demand are conflated into the latest value
+        context.setActive(true);
+        context.setActive(false);
+        context.setActive(true);
+        assertEquals(1, subscriber.values.size());
+        subscriber.subscription.request(1);
+        assertEquals(2, subscriber.values.size());
+        assertTrue(subscriber.values.get(1));
+
+        // a value equal to the last delivered value is not sent
+        context.setActive(false);
+        context.setActive(true);
+        subscriber.subscription.request(1);
+        assertEquals(2, subscriber.values.size());
+        context.setActive(false);
+        assertEquals(3, subscriber.values.size());
+        assertFalse(subscriber.values.get(2));
+
+        subscriber.subscription.cancel();
+        assertEquals(0, publisher.getSubscriptionCount());
+        context.setActive(true);
+        subscriber.subscription.request(1);
+        assertEquals(3, subscriber.values.size());
+    }
+
+    @Test
+    public void contextPublisher_invalidRequest() {
+        Context context = new Context("A", true);
+        ContextPublisher publisher = new ContextPublisher(context);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertNotNull(subscriber.error);
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertEquals(0, publisher.getSubscriptionCount());
+        context.setActive(false);
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.values.isEmpty());
+    }
+
+    private static class RecordingSubscriber implements Subscriber<Boolean> {
+        final List<Boolean> values = new ArrayList<>();
+        Subscription subscription;
+        Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Boolean value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package eu.h2020.helios_social.core.context;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiled context rule local unit tests
+ *
+ * @see ContextRuleEngine
+ */
+public class ContextRuleEngineUnitTest {
+
+    @Test
+    public void ruleEngine_isCorrect() {
+        Context contextA = new Context("A", true);
+        Context contextB = new Context("B", false);
+        Context contextNotA = new ContextNot("NotA", contextA);
+        Context contextAndNotA = new ContextAnd("AAndNotA", contextA, contextNotA);
+        Context contextOr = new ContextOr("AOrB", contextA, contextB);
+        Context contextAll = new ContextAll("All", Arrays.asList(contextOr, contextB, contextNotA));
+
+        ContextRuleEngine engine = new ContextRuleEngine(Arrays.asList(contextAndNotA, contextAll));
+        assertEquals(6, engine.size());
+        assertEquals(2, engine.getLeafCount());
+        int a = engine.getId(contextA);
+        int b = engine.getId(contextB);
+        assertTrue(engine.getId(contextNotA) > a);
+        assertTrue(engine.isActive(engine.getId(contextOr)));
+        assertFalse(engine.isActive(engine.getId(contextAndNotA)));
+
+        engine.setActive(a, false);
+        engine.setActive(b, true);
+        int n = engine.evaluate();
+        // NotA, AOrB unchanged (B is active), All
+        assertEquals(2, n);
+        assertEquals(engine.getId(contextNotA), engine.getChangedId(0));
+        assertEquals(engine.getId(contextAll), engine.getChangedId(1));
+        assertTrue(engine.isActive(engine.getId(contextAll)));
+        assertFalse(engine.isActive(engine.getId(contextAndNotA)));
+        assertEquals(0, engine.evaluate());
+    }
+
+    @Test
+    public void ruleEngine_matchesContexts() {
+        Random random = new Random(1);
+        List<Context> leaves = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            leaves.add(new Context("leaf" + i, random.nextBoolean()));
+        }
+        List<Context> rules = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            Context a = leaves.get(random.nextInt(leaves.size()));
+            Context b = rules.size() > 0 && random.nextBoolean() ? rules.get(random.nextInt(rules.size())) :
+                    leaves.get(random.nextInt(leaves.size()));
+            switch (i % 4) {
+                case 0: rules.add(new ContextAnd("and" + i, a, b)); break;
+                case 1: rules.add(new ContextOr("or" + i, a, b)); break;
+                case 2: rules.add(new ContextNot("not" + i, b)); break;
+                default: rules.add(new ContextAtLeast("atleast" + i, 2, Arrays.asList(a, b, leaves.get(i % leaves.size()))));
+            }
+        }
+        ContextRuleEngine engine = new ContextRuleEngine(rules);
+
+        long time = 0;
+        for (int tick = 0; tick < 100; tick++) {
+            // the leaf contexts update the rules through the listeners, and the engine through setActive
+            for (int i = 0; i < 10; i++) {
+                Context leaf = leaves.get(random.nextInt(leaves.size()));
+                boolean active = !leaf.isActive();
+                leaf.setActive(active);
+                engine.setActive(engine.getId(leaf), active);
+            }
+            long start = System.nanoTime();
+            engine.evaluate();
+            time += System.nanoTime() - start;
+            for (Context rule : rules) {
+                assertEquals(rule.isActive(), engine.isActive(engine.getId(rule)));
+            }
+        }
+        // about a hundred microseconds on a desktop JVM, the bound leaves room for slow machines
+        long averageMicros = time / 100 / 1000;
+        assertTrue("average evaluation " + averageMicros + " us", averageMicros < 2000);
+    }
+}
@@ -0,0 +1,134 @@
+package eu.h2020.helios_social.core.context;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Context timer and temporal context local unit tests
+ *
+ * @see ContextTimer
+ * @see ContextDebounce
+ * @see ContextActiveFor
+ * @see ContextWithin
+ * @see ContextFollowedBy
+ */
+public class ContextTimerUnitTest {
+
+    @Test
+    public void timer_runsInDeadlineOrder() {
+        ContextTimer timer = new ContextTimer(10, TimeUnit.MILLISECONDS, 8, true);
+        final List<Integer> order = new ArrayList<>();
+        // the deadlines wrap around the wheel of eight ticks
+        timer.schedule(() -> order.add(3), 250, TimeUnit.MILLISECONDS);
+        timer.schedule(() -> order.add(1), 20, TimeUnit.MILLISECONDS);
+        ContextTimer.Timeout cancelled = timer.schedule(() -> order.add(0), 50, TimeUnit.MILLISECONDS);
+        timer.schedule(() -> order.add(2), 120, TimeUnit.MILLISECONDS);
+        assertEquals(4, timer.getPendingCount());
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.isPending());
+
+        timer.advance(19, TimeUnit.MILLISECONDS);
+        assertTrue(order.isEmpty());
+        timer.advance(1, TimeUnit.MILLISECONDS);
+        assertEquals(Collections.singletonList(1), order);
+        // the task of the same bucket in a later rotation is not run early
+        timer.advance(80, TimeUnit.MILLISECONDS);
+        assertEquals(1, order.size());
+        timer.advance(150, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList(1, 2, 3), order);
+        assertEquals(0, timer.getPendingCount());
+        assertEquals(250, timer.now());
+    }
+
+    @Test
+    public void timer_runsInThread() throws InterruptedException {
+        ContextTimer timer = new ContextTimer(10, TimeUnit.MILLISECONDS, 8);
+        final CountDownLatch done = new CountDownLatch(2);
+        timer.schedule(done::countDown, 10, TimeUnit.MINUTES);
+        timer.schedule(done::countDown, 20, TimeUnit.MILLISECONDS);
+        timer.schedule(done::countDown, 30, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, timer.getPendingCount());
+    }
+
+    @Test
+    public void debounce_filtersFlapping() {
+        ContextTimer timer = new ContextTimer(10, TimeUnit.MILLISECONDS, 8, true);
+        Context context = new Context("A", false);
+        ContextDebounce debounce = new ContextDebounce(null, "DebouncedA", context, 600, 0, 100, timer);
+        final List<Boolean> changes = new ArrayList<>();
+        debounce.registerContextListener(changes::add);
+
+        // the flapping within the settle time is not followed
+        context.setActive(true);
+        timer.advance(30, TimeUnit.MILLISECONDS);
+        context.setActive(false);
+        timer.advance(200, TimeUnit.MILLISECONDS);
+        assertFalse(debounce.isActive());
+        assertEquals(0, changes.size());
+
+        // the change is followed after the settle time
+        context.setActive(true);
+        timer.advance(90, TimeUnit.MILLISECONDS);
+        assertFalse(debounce.isActive());
+        timer.advance(10, TimeUnit.MILLISECONDS);
+        assertTrue(debounce.isActive());
+
+        // the context stays active at least the minimum on time
+        context.setActive(false);
+        timer.advance(590, TimeUnit.MILLISECONDS);
+        assertTrue(debounce.isActive());
+        timer.advance(10, TimeUnit.MILLISECONDS);
+        assertFalse(debounce.isActive());
+        assertEquals(Arrays.asList(true, false), changes);
+    }
+
+    @Test
+    public void temporalContexts_isCorrect() {
+        ContextTimer timer = new ContextTimer(10, TimeUnit.MILLISECONDS, 8, true);
+        Context contextA = new Context("A", false);
+        Context contextB = new Context("B", false);
+        Context activeFor = new ContextActiveFor(null, "AFor200ms", contextA, 200, timer);
+        Context within = new ContextWithin(null, "AWithin200ms", contextA, 200, timer);
+        Context followedBy = new ContextFollowedBy(null, "AFollowedByB", contextA, contextB, 100, timer);
+        // the temporal contexts are composable
+        Context contextAnd = new ContextAnd("AForAndB", activeFor, contextB);
+
+        contextA.setActive(true);
+        assertFalse(activeFor.isActive());
+        assertTrue(within.isActive());
+        timer.advance(190, TimeUnit.MILLISECONDS);
+        assertFalse(activeFor.isActive());
+        assertTrue(within.isActive());
+        timer.advance(10, TimeUnit.MILLISECONDS);
+        assertTrue(activeFor.isActive());
+        assertFalse(within.isActive());
+
+        contextB.setActive(true);
+        assertTrue(followedBy.isActive());
+        assertTrue(contextAnd.isActive());
+        contextA.setActive(false);
+        assertFalse(activeFor.isActive());
+        assertFalse(contextAnd.isActive());
+        contextB.setActive(false);
+        assertFalse(followedBy.isActive());
+
+        // B follows A within the window
+        contextB.setActive(true);
+        assertTrue(followedBy.isActive());
+        contextB.setActive(false);
+        timer.advance(101, TimeUnit.MILLISECONDS);
+        contextB.setActive(true);
+        assertFalse(followedBy.isActive());
+    }
+}
@@ -0,0 +1,145 @@
+package eu.h2020.helios_social.core.context;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Context change propagation local unit tests
+ *
+ * @see ContextTransaction
+ */
+public class ContextTransactionUnitTest {
+
+    @Test
+    public void transaction_isGlitchFree() {
+        Context contextA = new Context("A", false);
+        Context contextNotA = new ContextNot("NotA", contextA);
+        Context contextAAndNotA = new ContextAnd("AAndNotA", contextA, contextNotA);
+        assertTrue(contextAAndNotA.getRank() > contextNotA.getRank());
+
+        final List<Boolean> changes = new ArrayList<>();
+        contextAAndNotA.registerContextListener(changes::add);
+        contextA.setActive(true);
+        contextA.setActive(false);
+        // A AND NOT A is never active
+        assertFalse(contextAAndNotA.isActive());
+        assertEquals(0, changes.size());
+    }
+
+    @Test
+    public void transaction_notifiesNetChanges() {
+        Context contextA = new Context("A", false);
+        Context contextB = new Context("B", false);
+        Context contextC = new Context("C", true);
+        Context contextAnd = new ContextAnd("AAndB", contextA, contextB);
+        Context contextOr = new ContextOr("AndOrC", contextAnd, contextC);
+
+        final List<String> changes = new ArrayList<>();
+        contextAnd.registerContextListener(active -> changes.add("and=" + active));
+        contextOr.registerContextListener(active -> changes.add("or=" + active));
+        contextC.registerContextListener(active -> changes.add("c=" + active));
+
+        ContextTransaction.begin();
+        try {
+            contextA.setActive(true);
+            contextB.setActive(true);
+            contextC.setActive(false);
+            contextC.setActive(true);
+            contextC.setActive(false);
+            assertTrue(ContextTransaction.isActive());
+            // the listeners are notified at commit
+            assertEquals(0, changes.size());
+        } finally {
+            ContextTransaction.commit();
+        }
+        assertFalse(ContextTransaction.isActive());
+        assertTrue(contextOr.isActive());
+        // each listener is notified once of the net change, the OR stays active
+        assertEquals(2, changes.size());
+        assertTrue(changes.contains("and=true"));
+        assertTrue(changes.contains("c=false"));
+
+        // changes in listeners are propagated in new transactions
+        contextAnd.registerContextListener(active -> contextC.setActive(!active));
+        ContextTransaction.run(() -> contextB.setActive(false));
+        assertTrue(contextC.isActive());
+        assertTrue(contextOr.isActive());
+    }
+
+    @Test
+    public void transaction_evaluatesCompositesOnce() {
+        Context contextA = new Context("A", false);
+        Context contextB = new Context("B", false);
+        final List<Boolean> inputs = new ArrayList<>();
+        final AtomicInteger evaluations = new AtomicInteger();
+        Context contextAnd = new ContextAnd("AAndB", contextA, contextB) {
+            @Override
+            public void contextChanged(boolean active) {
+                evaluations.incrementAndGet();
+                inputs.add(getContextA().isActive() && getContextB().isActive());
+                super.contextChanged(active);
+            }
+        };
+        List<Context> contexts = new ArrayList<>();
+        contexts.add(contextA);
+        contexts.add(contextB);
+        ContextAtLeast contextAll = new ContextAll("All", contexts);
+
+        ContextTransaction.run(() -> {
+            contextA.setActive(true);
+            contextB.setActive(true);
+        });
+        // the composite is evaluated once, after both its inputs have changed
+        assertEquals(1, evaluations.get());
+        assertTrue(inputs.get(0));
+        assertTrue(contextAnd.isActive());
+        assertEquals(2, contextAll.getActiveCount());
+        assertTrue(contextAll.isActive());
+
+        ContextTransaction.run(() -> {
+            contextA.setActive(false);
+            contextB.setActive(false);
+        });
+        assertEquals(2, evaluations.get());
+        assertFalse(contextAnd.isActive());
+        assertEquals(0, contextAll.getActiveCount());
+    }
+
+    @Test
+    public void transaction_notifiesBatchListeners() {
+        Context contextA = new Context("A", false);
+        Context contextB = new Context("B", true);
+        Context contextAnd = new ContextAnd("AAndB", contextA, contextB);
+
+        final List<List<ContextChange>> batches = new ArrayList<>();
+        ContextBatchListener listener = batches::add;
+        ContextTransaction.registerBatchListener(listener);
+        try {
+            ContextTransaction.run(() -> {
+                contextA.setActive(true);
+                contextB.setActive(false);
+                contextB.setActive(true);
+            });
+        } finally {
+            ContextTransaction.unregisterBatchListener(listener);
+        }
+        contextA.setActive(false);
+
+        // one batch, in propagation order
+        assertEquals(1, batches.size());
+        List<ContextChange> changes = batches.get(0);
+        assertEquals(2, changes.size());
+        assertEquals(contextA.getId(), changes.get(0).getContextId());
+        assertFalse(changes.get(0).getOldActive());
+        assertTrue(changes.get(0).getNewActive());
+        assertEquals(contextAnd.getId(), changes.get(1).getContextId());
+        assertEquals(changes.get(0).getTimestamp(), changes.get(1).getTimestamp());
+    }
+}
@@ -0,0 +1,124 @@
+package eu.h2020.helios_social.core.info_control;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.h2020.helios_social.core.context.Context;
+import eu.h2020.helios_social.core.context.ContextAnd;
+import eu.h2020.helios_social.core.context.ContextAny;
+import eu.h2020.helios_social.core.context.ContextAtLeast;
+import eu.h2020.helios_social.core.context.ContextDebounce;
+import eu.h2020.helios_social.core.context.ContextFollowedBy;
+import eu.h2020.helios_social.core.context.ContextNot;
+import eu.h2020.helios_social.core.context.ext.LocationContext;
+import eu.h2020.helios_social.core.context.ext.TimeContext;
+import eu.h2020.helios_social.core.context.ext.WifiContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Context codec local unit tests
+ *
+ * @see ContextCodecs
+ */
+public class ContextCodecsUnitTest {
+
+    @Test
+    public void builtInCodecsTest() throws IOException {
+        Map<String, Context> contexts = new HashMap<>();
+        TimeContext time = new TimeContext("time1", "Time", 1000L, 2000L, TimeContext.REPEAT_DAILY);
+        LocationContext location = new LocationContext("loc1", "Location", 60.1, 24.9, 100.0);
+        WifiContext wifi = new WifiContext("wifi1", "Wifi", "helios");
+        ContextAnd and = new ContextAnd("and1", "And", time, location);
+        ContextNot not = new ContextNot("not1", "Not", and);
+
+        TimeContext time2 = (TimeContext) restore(time, contexts);
+        assertEquals(1000L, time2.getStartTime());
+        assertEquals(2000L, time2.getEndTime());
+        assertEquals(TimeContext.REPEAT_DAILY, time2.getRepeat());
+        LocationContext location2 = (LocationContext) restore(location, contexts);
+        assertEquals(24.9, location2.getLon(), 0.0);
+        assertEquals(100.0, location2.getRadius(), 0.0);
+        assertEquals("helios", ((WifiContext) restore(wifi, contexts)).getSsid());
+        assertNull(((WifiContext) restore(new WifiContext("wifi3", "Wifi", null), contexts)).getSsid());
+
+        // the composite contexts refer to the restored dependencies
+        MyContextsEntity notEntity = new MyContextsEntity(not);
+        assertEquals(ContextCodecs.TAG_NOT, notEntity.getType());
+        assertEquals("and1", notEntity.getDependencyIds().get(0));
+        assertNull(notEntity.getContext(contexts));
+        ContextAnd and2 = (ContextAnd) restore(and, contexts);
+        assertTrue(and2.getContextA() == time2);
+        ContextNot not2 = (ContextNot) notEntity.getContext(contexts);
+        assertEquals("Not", not2.getName());
+        assertTrue(not2.getContextNot() == and2);
+        contexts.put(not2.getId(), not2);
+
+        ContextAtLeast atLeast = new ContextAtLeast("atleast1", "AtLeast", 2, Arrays.asList(time, wifi, not));
+        ContextAtLeast atLeast2 = (ContextAtLeast) restore(atLeast, contexts);
+        assertEquals(2, atLeast2.getMinActive());
+        assertEquals(3, atLeast2.getContexts().size());
+        assertTrue(atLeast2.getContexts().get(2) == not2);
+        assertTrue(restore(new ContextAny("any1", "Any", Arrays.asList(time, wifi)), contexts) instanceof ContextAny);
+        ContextDebounce debounce2 = (ContextDebounce) restore(new ContextDebounce("debounce1", "Debounce", wifi, 1000L, 2000L, 500L), contexts);
+        assertEquals(2000L, debounce2.getMinOffTime());
+        assertEquals(500L, debounce2.getSettleTime());
+        assertEquals("wifi1", debounce2.getDebouncedContext().getId());
+        ContextFollowedBy followedBy2 = (ContextFollowedBy) restore(new ContextFollowedBy("followed1", "FollowedBy", time, wifi, 60000L), contexts);
+        assertEquals(60000L, followedBy2.getWindow());
+        assertTrue(followedBy2.getContextB() == debounce2.getDebouncedContext());
+    }
+
+    @Test
+    public void customCodecTest() throws IOException {
+        Map<String, Context> contexts = new HashMap<>();
+        // an unregistered subclass is stored with the codec of its superclass
+        Context subclass = new WifiContext("wifi2", "Wifi", "helios") {};
+        assertEquals(ContextCodecs.TAG_WIFI, new MyContextsEntity(subclass).getType());
+
+        ContextCodecs.register("level", LevelContext.class, new ContextCodec<LevelContext>() {
+            @Override
+            public void encode(@NonNull LevelContext context, @NonNull DataOutput out) throws IOException {
+                out.writeInt(context.level);
+            }
+
+            @Override
+            public LevelContext decode(String id, String name, boolean active, @NonNull List<Context> dependencies,
+                                       @NonNull DataInput in) throws IOException {
+                return new LevelContext(id, name, in.readInt());
+            }
+        });
+        LevelContext level = (LevelContext) restore(new LevelContext("level1", "Level", 3), contexts);
+        assertEquals(3, level.level);
+        assertFalse(level.isActive());
+    }
+
+    private static Context restore(Context context, Map<String, Context> contexts) throws IOException {
+        Context restored = new MyContextsEntity(context).getContext(contexts);
+        assertEquals(context.getId(), restored.getId());
+        assertTrue(context.getClass() == restored.getClass() || context.getClass().isAnonymousClass());
+        contexts.put(restored.getId(), restored);
+        return restored;
+    }
+
+    private static class LevelContext extends Context {
+        final int level;
+
+        LevelContext(String id, String name, int level) {
+            super(id, name, false);
+            this.level = level;
+        }
+    }
+}
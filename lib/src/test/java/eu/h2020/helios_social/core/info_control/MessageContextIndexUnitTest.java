@@ -0,0 +1,131 @@
+package eu.h2020.helios_social.core.info_control;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Message history aggregate index local unit tests
+ *
+ * @see MessageContextIndex
+ */
+public class MessageContextIndexUnitTest {
+
+    private static final String[] contextIds = {"home", "work", "free"};
+    private static final String[] senders = {"alice", "bob", "carol", null};
+
+    @Test
+    public void medianTest() {
+        MessageContextIndex index = new MessageContextIndex();
+        index.add(new MessageContext("work", "alice", 0, 100, 2, 0.5f, null, null));
+        index.add(new MessageContext("work", "alice", 0, 300, 4, 0.7f, null, null));
+        index.add(new MessageContext("work", "bob", 0, 200, 5, -1.0f, null, null));
+        index.add(new MessageContext("home", "bob", 0, -1, 0, -1.0f, null, null));
+
+        assertEquals(4, index.getSize(null, null));
+        assertEquals(3, index.getSize("work", null));
+        assertEquals(2, index.getSize(null, "bob"));
+        assertEquals(200, index.getMedianReactionTime("work", "alice"));
+        assertEquals(200, index.getMedianReactionTime(null, null));
+        assertEquals(-1, index.getMedianReactionTime("home", null));
+        assertEquals(3, index.getMedianImportance("work", "alice"));
+        assertEquals(4, index.getMedianImportance(null, null));
+        assertEquals(-1, index.getMedianImportance("home", "bob"));
+        assertEquals(0.6, index.getMedianTrust("work", "alice"), 1e-6);
+        assertEquals(-1.0, index.getMedianTrust("work", "bob"), 1e-6);
+        assertEquals(0, index.getSize("free", "alice"));
+    }
+
+    @Test
+    public void insertRemoveTest() {
+        Random random = new Random(1);
+        MessageContextIndex index = new MessageContextIndex();
+        List<MessageContext> history = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            MessageContext messageContext = new MessageContext(contextIds[random.nextInt(contextIds.length)],
+                    senders[random.nextInt(senders.length)], i, random.nextInt(1000) - 100,
+                    random.nextInt(6), random.nextFloat() - 0.2f, null, null);
+            history.add(messageContext);
+            index.add(messageContext);
+            if (history.size() > 300) {
+                index.remove(history.remove(random.nextInt(history.size())));
+            }
+        }
+        for (String contextId : new String[] {null, "home", "work", "free"}) {
+            for (String from : senders) {
+                assertEquals(size(history, contextId, from), index.getSize(contextId, from));
+                assertEquals(medianReactionTime(history, contextId, from), index.getMedianReactionTime(contextId, from));
+                assertEquals(medianImportance(history, contextId, from), index.getMedianImportance(contextId, from));
+                assertEquals(medianTrust(history, contextId, from), index.getMedianTrust(contextId, from), 1e-6);
+            }
+        }
+        index.clear();
+        assertEquals(0, index.getSize(null, null));
+        assertEquals(-1, index.getMedianReactionTime(null, null));
+    }
+
+    private static boolean matches(MessageContext messageContext, String contextId, String from) {
+        return (contextId == null || contextId.equals(messageContext.getContextID())) &&
+                (from == null || from.equals(messageContext.getFrom()));
+    }
+
+    private static int size(List<MessageContext> history, String contextId, String from) {
+        int size = 0;
+        for (MessageContext messageContext : history) {
+            if (matches(messageContext, contextId, from)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private static int medianReactionTime(List<MessageContext> history, String contextId, String from) {
+        int[] values = new int[history.size()];
+        int n = 0;
+        for (MessageContext messageContext : history) {
+            if (matches(messageContext, contextId, from) && messageContext.getReactionTime() >= 0) {
+                values[n++] = messageContext.getReactionTime();
+            }
+        }
+        return median(values, n);
+    }
+
+    private static int medianImportance(List<MessageContext> history, String contextId, String from) {
+        int[] values = new int[history.size()];
+        int n = 0;
+        for (MessageContext messageContext : history) {
+            if (matches(messageContext, contextId, from) && messageContext.getImportance() > 0) {
+                values[n++] = messageContext.getImportance();
+            }
+        }
+        return median(values, n);
+    }
+
+    private static double medianTrust(List<MessageContext> history, String contextId, String from) {
+        double[] values = new double[history.size()];
+        int n = 0;
+        for (MessageContext messageContext : history) {
+            if (matches(messageContext, contextId, from) && messageContext.getTrust() >= 0.0) {
+                values[n++] = messageContext.getTrust();
+            }
+        }
+        if (n == 0) {
+            return -1.0;
+        }
+        Arrays.sort(values, 0, n);
+        return n % 2 == 0 ? (values[n/2] + values[n/2 - 1])/2 : values[n/2];
+    }
+
+    private static int median(int[] values, int n) {
+        if (n == 0) {
+            return -1;
+        }
+        Arrays.sort(values, 0, n);
+        return n % 2 == 0 ? (values[n/2] + values[n/2 - 1])/2 : values[n/2];
+    }
+}
@@ -0,0 +1,101 @@
+package eu.h2020.helios_social.core.info_control;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Columnar message history local unit tests
+ *
+ * @see MessageHistory
+ */
+public class MessageHistoryUnitTest {
+
+    @Test
+    public void evictionTest() {
+        MessageHistory history = new MessageHistory(3);
+        final List<Long> evicted = new ArrayList<>();
+        MessageHistory.RowListener listener = (h, i) -> evicted.add(h.getTimestamp(i));
+        for (int i = 1; i <= 5; i++) {
+            history.append(new MessageContext("context" + (i % 2), "user" + i, i, 10*i, i, 0.5f, "topic", "text"), listener);
+        }
+        // the oldest messages are evicted first
+        assertEquals(3, history.size());
+        assertEquals(2, evicted.size());
+        assertEquals(1L, (long) evicted.get(0));
+        assertEquals(2L, (long) evicted.get(1));
+        assertEquals(3L, history.getTimestamp(0));
+        assertEquals(5L, history.getTimestamp(2));
+        assertEquals("context1", history.getContextId(2));
+        assertEquals("user4", history.getFrom(1));
+
+        List<MessageContext> messageContexts = history.toList();
+        assertEquals(3, messageContexts.size());
+        assertEquals(40, messageContexts.get(1).getReactionTime());
+        // the texts are not kept in the history
+        assertNull(messageContexts.get(1).getMessageText());
+    }
+
+    @Test
+    public void removeTest() {
+        MessageHistory history = new MessageHistory(10);
+        MessageContext messageContext1 = new MessageContext("context1", null, 1, -1, 0, -1.0f, null, null);
+        MessageContext messageContext2 = new MessageContext("context2", "user2", 2, 20, 3, 0.5f, null, null);
+        MessageContext messageContext3 = new MessageContext("context1", "user3", 3, 30, 4, 0.5f, null, null);
+        // an identical copy of messageContext2
+        MessageContext messageContext4 = new MessageContext("context2", "user2", 2, 20, 3, 0.5f, null, null);
+        messageContext1.id = 1;
+        messageContext2.id = 2;
+        messageContext3.id = 3;
+        messageContext4.id = 4;
+        history.append(messageContext1, null);
+        history.append(messageContext2, null);
+        history.append(messageContext3, null);
+        history.append(messageContext4, null);
+
+        // the rows are matched by id, not by value
+        final List<Integer> removed = new ArrayList<>();
+        assertEquals(1, history.remove(messageContext2.id, (h, i) -> removed.add(h.getId(i))));
+        assertEquals(-1, history.remove(messageContext2.id, null));
+        assertEquals(1, removed.size());
+        assertEquals(2, (int) removed.get(0));
+        assertEquals(4, history.getId(2));
+        assertEquals(2, history.remove(messageContext4.id, null));
+        assertEquals(2, history.size());
+        assertEquals("user3", history.getFrom(1));
+        assertNull(history.getFrom(0));
+
+        // the released dictionary codes are reused
+        history.append(new MessageContext("context3", "user4", 4, 40, 5, 0.5f, null, null), null);
+        assertEquals("context3", history.getContextId(2));
+        assertEquals("context1", history.getContextId(1));
+        history.clear();
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    public void clientKeyTest() {
+        MessageHistory history = new MessageHistory(10);
+        MessageContext loaded = new MessageContext("context1", "user1", 1, 10, 1, 0.5f, null, null);
+        MessageContext inserted = new MessageContext("context1", "user2", 2, 20, 2, 0.5f, null, null);
+        loaded.id = 7;
+        inserted.key = -1;
+        history.append(loaded, null);
+        history.append(inserted, null);
+        // a message without id is identified by its client-side key, until the id is known
+        assertEquals(-1, history.getId(1));
+        assertEquals(-1, history.toList().get(1).key);
+        assertEquals(0, history.toList().get(1).id);
+        assertTrue(history.replaceId(-1, 8));
+        assertEquals(8, history.toList().get(1).id);
+        assertFalse(history.replaceId(-1, 9));
+        assertEquals(1, history.remove(8, null));
+        assertEquals(7, history.getId(0));
+    }
+}
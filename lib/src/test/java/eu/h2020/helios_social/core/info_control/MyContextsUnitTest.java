@@ -0,0 +1,192 @@
+package eu.h2020.helios_social.core.info_control;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import eu.h2020.helios_social.core.context.Context;
+import eu.h2020.helios_social.core.context.ContextAnd;
+import eu.h2020.helios_social.core.context.ContextAtLeast;
+import eu.h2020.helios_social.core.context.ContextListener;
+import eu.h2020.helios_social.core.context.ContextNot;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MyContexts local unit tests
+ *
+ * @see MyContexts
+ */
+public class MyContextsUnitTest {
+
+    @Test
+    public void myContexts_snapshot() {
+        MyContexts myContexts = new MyContexts(null, null);
+        Context contextA = new Context("A", false);
+        Context contextB = new Context("B", true);
+        Context contextAnd = new ContextAnd("AAndB", contextA, contextB);
+        myContexts.add(contextA);
+        myContexts.add(contextB);
+        myContexts.add(contextAnd);
+
+        ContextSnapshot snapshot = myContexts.getSnapshot();
+        assertEquals(3, snapshot.getContexts().size());
+        assertEquals(1, snapshot.getActiveCount());
+        assertSame(contextB, snapshot.getActiveContexts().get(0));
+        // the snapshot is shared until the next change
+        assertSame(snapshot, myContexts.getSnapshot());
+
+        // a listener of A sees also the change of AAndB, which is propagated after A
+        int[] activeCounts = new int[1];
+        contextA.registerContextListener(active -> activeCounts[0] = myContexts.getActiveContexts().size());
+        contextA.setActive(true);
+        assertEquals(3, activeCounts[0]);
+        ContextSnapshot changed = myContexts.getSnapshot();
+        assertEquals(3, changed.getActiveCount());
+        // the contexts are shared with the previous snapshot, when only active values changed
+        assertSame(snapshot.getContexts().get(0), changed.getContexts().get(0));
+        assertEquals(3, myContexts.getActiveContexts().size());
+        // the old snapshot is immutable
+        assertEquals(1, snapshot.getActiveCount());
+        assertFalse(snapshot.getActiveContexts().contains(contextA));
+
+        myContexts.remove(contextB);
+        assertEquals(2, myContexts.getActiveContexts().size());
+        assertFalse(myContexts.getActiveContexts().contains(contextB));
+        // the index of the removed context is reused
+        Context contextC = new Context("C", true);
+        myContexts.add(contextC);
+        ContextSnapshot added = myContexts.getSnapshot();
+        assertEquals(3, added.getContexts().size());
+        assertEquals(3, added.getActiveCount());
+
+        myContexts.removeAll();
+        assertEquals(0, myContexts.getSnapshot().getContexts().size());
+        contextC.setActive(false);
+        contextC.setActive(true);
+        assertEquals(0, myContexts.getActiveContexts().size());
+        assertNull(myContexts.getSnapshot().getContext(0));
+    }
+
+    @Test
+    public void myContexts_intern() {
+        MyContexts myContexts = new MyContexts(null, null);
+        Context work = myContexts.intern(new Context("work", "Work", false));
+        Context weekday = myContexts.intern(new Context("weekday", "Weekday", true));
+
+        // the same rule created in two places shares one instance
+        ContextAnd and1 = myContexts.intern(new ContextAnd("WorkAndWeekday", work, weekday));
+        ContextAnd and2 = myContexts.intern(new ContextAnd("WeekdayAndWork", weekday, work));
+        ContextAtLeast atLeast = myContexts.intern(new ContextAtLeast("AtLeast", 1, Arrays.asList(work, weekday)));
+        ContextNot not1 = myContexts.intern(new ContextNot("NotWork", work));
+        ContextNot not2 = myContexts.intern(new ContextNot("NotWork", weekday));
+        assertSame(and1, and2);
+        assertEquals(2, myContexts.getReferenceCount(and1));
+        assertTrue(atLeast != (Context) and1);
+        assertTrue(not1 != not2);
+        assertEquals(6, myContexts.size());
+        // MyContexts, and1, atLeast and not1 listen to work, the discarded duplicate does not
+        assertEquals(4, countListeners(work));
+
+        work.setActive(true);
+        assertTrue(and1.isActive());
+        myContexts.release(and2);
+        assertSame(and1, myContexts.getContextById(and1.getId()));
+        myContexts.release(and1);
+        assertNull(myContexts.getContextById(and1.getId()));
+        assertEquals(0, myContexts.getReferenceCount(and1));
+        assertEquals(3, countListeners(work));
+    }
+
+    private static int countListeners(Context context) {
+        int count = 0;
+        for (Iterator<ContextListener> i = context.getContextListeners(); i.hasNext(); i.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void myContexts_epoch() {
+        MyContexts myContexts = new MyContexts(null, null);
+        Context context = new Context("A", false);
+        long epoch = myContexts.getEpoch();
+        myContexts.add(context);
+        assertTrue(myContexts.getEpoch() > epoch);
+
+        epoch = myContexts.getEpoch();
+        long contextEpoch = context.getEpoch();
+        context.setActive(true);
+        assertTrue(context.getEpoch() > contextEpoch);
+        assertTrue(myContexts.getEpoch() > epoch);
+        assertEquals(myContexts.getEpoch(), myContexts.getSnapshot().getEpoch());
+
+        // a parameter change is seen by MyContexts, when the context is updated
+        epoch = myContexts.getEpoch();
+        contextEpoch = context.getEpoch();
+        context.setName("B");
+        assertTrue(context.getEpoch() > contextEpoch);
+        assertEquals(epoch, myContexts.getEpoch());
+        myContexts.update(context);
+        assertTrue(myContexts.getEpoch() > epoch);
+    }
+
+    @Test
+    public void myContexts_publisher() {
+        MyContexts myContexts = new MyContexts(null, null);
+        Context contextA = new Context("A", false);
+        myContexts.add(contextA);
+        List<ContextSnapshot> snapshots = new ArrayList<>();
+        Subscription[] subscription = new Subscription[1];
+        MyContextsPublisher publisher = myContexts.createPublisher();
+        publisher.subscribe(new Subscriber<ContextSnapshot>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription[0] = s;
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ContextSnapshot snapshot) {
+                snapshots.add(snapshot);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertEquals(1, snapshots.size());
+        assertEquals(0, snapshots.get(0).getActiveCount());
+
+        contextA.setActive(true);
+        assertEquals(2, snapshots.size());
+        assertEquals(1, snapshots.get(1).getActiveCount());
+
+        Context contextB = new Context("B", true);
+        myContexts.add(contextB);
+        assertEquals(3, snapshots.size());
+        assertEquals(2, snapshots.get(2).getContexts().size());
+
+        myContexts.remove(contextB);
+        assertEquals(4, snapshots.size());
+        assertEquals(1, snapshots.get(3).getContexts().size());
+
+        subscription[0].cancel();
+        contextA.setActive(false);
+        assertEquals(4, snapshots.size());
+    }
+}
@@ -0,0 +1,96 @@
+package eu.h2020.helios_social.core.info_control;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Streaming quantile sketch local unit tests
+ *
+ * @see QuantileSketch
+ */
+public class QuantileSketchUnitTest {
+
+    @Test
+    public void quantileTest() {
+        double error = 0.01;
+        int n = 200000;
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.accuracyForError(error));
+        Random random = new Random(7);
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            // skewed, reaction time like distribution
+            values[i] = (int) (-Math.log(1.0 - random.nextDouble()) * 60000);
+            sketch.update(values[i]);
+        }
+        assertEquals(n, sketch.getCount());
+        Arrays.sort(values);
+        for (double quantile : new double[] {0.1, 0.5, 0.9, 0.99}) {
+            int estimate = sketch.getQuantile(quantile);
+            // the rank of the estimate should be within the error bound
+            int rank = Arrays.binarySearch(values, estimate);
+            assertTrue(rank >= 0);
+            double rankError = Math.abs((double) rank / n - quantile);
+            assertTrue(rankError < 3*error);
+        }
+    }
+
+    @Test
+    public void smallTest() {
+        QuantileSketch sketch = new QuantileSketch(100);
+        assertEquals(-1, sketch.getQuantile(0.5));
+        for (int i = 1; i <= 9; i++) {
+            sketch.update(i);
+        }
+        assertEquals(5, sketch.getQuantile(0.5));
+        assertEquals(1, sketch.getQuantile(0.0));
+        assertEquals(9, sketch.getQuantile(1.0));
+        sketch.clear();
+        assertEquals(0, sketch.getCount());
+    }
+
+    @Test
+    public void encodeMergeTest() {
+        QuantileSketch sketch = new QuantileSketch(50);
+        QuantileSketch other = new QuantileSketch(50);
+        for (int i = 0; i < 1000; i++) {
+            sketch.update(i);
+            other.update(1000 + i);
+        }
+        QuantileSketch decoded = QuantileSketch.fromBytes(sketch.toBytes());
+        assertEquals(sketch.getCount(), decoded.getCount());
+        assertEquals(sketch.getQuantile(0.5), decoded.getQuantile(0.5));
+        assertEquals(sketch.getQuantile(0.9), decoded.getQuantile(0.9));
+
+        // the merged sketch summarizes the values of both sketches
+        decoded.merge(other);
+        assertEquals(2000, decoded.getCount());
+        assertEquals(1000, decoded.getQuantile(0.5), 2000*0.1);
+    }
+
+    @Test
+    public void sketchesRestoreTest() {
+        ReactionTimeSketches sketches = new ReactionTimeSketches(0.01);
+        for (int i = 1; i <= 100; i++) {
+            sketches.add(new MessageContext("context1", "user1", i, i, 0, -1.0f, null, null));
+        }
+        List<ReactionTimeSketchEntity> saved = sketches.takeDirty();
+        // total, by context, by sender and by (context, sender)
+        assertEquals(4, saved.size());
+        assertTrue(sketches.takeDirty().isEmpty());
+
+        // restored sketches are merged with the values added before the restore
+        ReactionTimeSketches restored = new ReactionTimeSketches(0.01);
+        restored.add(new MessageContext("context1", "user2", 0, 1000, 0, -1.0f, null, null));
+        restored.restore(saved);
+        assertEquals(50, restored.getQuantile("context1", "user1", 0.5));
+        assertEquals(51, restored.getQuantile(null, null, 0.5));
+        assertEquals(1000, restored.getQuantile(null, null, 1.0));
+        assertEquals(1000, restored.getQuantile(null, "user2", 0.5));
+    }
+}
@@ -3,6 +3,10 @@ package eu.h2020.helios_social.core.sensor;
 import org.junit.Test;
 
 import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import eu.h2020.helios_social.core.sensor.ext.TimeSensor;
 
@@ -46,5 +50,21 @@ public class TimeSensorUnitTest   {
         }
     }
 
-
-}
\ No newline at end of file
+    @Test
+    public void deliveryExecutorTest() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "delivery"));
+        TimeSensor timeSensor = new TimeSensor(null, 50, executor);
+        final CountDownLatch received = new CountDownLatch(2);
+        final String[] threadName = new String[1];
+        timeSensor.registerValueListener(value -> {
+            threadName[0] = Thread.currentThread().getName();
+            received.countDown();
+        });
+        timeSensor.startUpdates();
+        // the values are delivered on the executor, not on the timer thread
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        timeSensor.stopUpdates();
+        executor.shutdown();
+        assertEquals("delivery", threadName[0]);
+    }
+}